@@ -0,0 +1,65 @@
+package main.benchmark;
+
+import main.model.embedded.StoredUser;
+import main.repository.embedded.EmbeddedUserStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Встроенное хранилище пользователей (профиль embedded): чтение пользователя по login
+ * и создание пользователя с записью в отображённый в память журнал.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EmbeddedUserStoreBenchmark {
+    @Param({"10000", "1000000"})
+    private int users;
+
+    private final AtomicLong inserted = new AtomicLong();
+    private Path directory;
+    private EmbeddedUserStore store;
+
+    @Setup
+    public void openStore() throws IOException {
+        directory = Files.createTempDirectory("embedded-user-store");
+        store = new EmbeddedUserStore(directory.toString(), DataSize.ofMegabytes(16), false,
+                Duration.ofHours(1), DataSize.ofGigabytes(1));
+        store.open();
+        for (int i = 0; i < users; i++)
+            store.insert("login" + i, "name" + i, "hash", Set.of());
+    }
+
+    @TearDown
+    public void deleteStore() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Optional<StoredUser> findByLogin() {
+        return store.findByLogin("login" + ThreadLocalRandom.current().nextInt(users));
+    }
+
+    @Benchmark
+    public StoredUser insert() {
+        return store.insert("new" + inserted.incrementAndGet(), "name", "hash", Set.of());
+    }
+}
@@ -0,0 +1,71 @@
+package main.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import main.api.response.BooleanResponseDTO;
+import main.api.response.UserDTO;
+import main.api.response.UserListResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация ответов API в JSON тем же ObjectMapper, что строит Spring Boot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class JsonSerializationBenchmark {
+    @Param({"10", "10000", "1000000"})
+    private int users;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    // ObjectMapper закрывает поток после записи, поэтому OutputStream.nullOutputStream() не подходит
+    private final OutputStream out = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    private UserListResponse userListResponse;
+    private BooleanResponseDTO errorResponse;
+
+    @Setup
+    public void createResponses() {
+        List<UserDTO> dtoList = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            UserDTO dto = new UserDTO();
+            dto.setLogin("login" + i);
+            dto.setName("name" + i);
+            dtoList.add(dto);
+        }
+        userListResponse = new UserListResponse(dtoList.size(), dtoList);
+
+        Map<String, String> errors = new LinkedHashMap<>();
+        errors.put("login", "invalid argument");
+        errors.put("password", "invalid argument");
+        errorResponse = new BooleanResponseDTO(errors);
+    }
+
+    @Benchmark
+    public void userListResponse() throws IOException {
+        objectMapper.writeValue(out, userListResponse);
+    }
+
+    @Benchmark
+    public void booleanResponse() throws IOException {
+        objectMapper.writeValue(out, errorResponse);
+    }
+}
@@ -0,0 +1,72 @@
+package main.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время старта приложения в отдельном процессе JVM: от запуска java до ApplicationReadyEvent и завершения
+ * (user.startup.exit-after-ready), на встроенной H2 с пустой базой (схема создаётся миграцией).
+ * Варианты запуска:
+ * - default - без профиля faststart и без индекса компонентов (сканирование classpath);
+ * - faststart - профиль faststart (ленивые бины) и индекс компонентов;
+ * - faststart-appcds - то же с архивом AppCDS.
+ * Требует сборки в профиле faststart: mvn -Pfaststart,benchmark verify -Dbenchmark.include=StartupBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+    @Param({"default", "faststart", "faststart-appcds"})
+    private String mode;
+
+    private List<String> command;
+
+    @Setup(Level.Trial)
+    public void buildCommand() {
+        String classpath = System.getProperty("startup.classpath");
+        String archive = System.getProperty("startup.archive");
+        if (classpath == null || archive == null || !Files.exists(Paths.get(archive)))
+            throw new IllegalStateException("Application is not packaged with the faststart profile");
+
+        command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // Без архива приложения JVM использует только архив классов JDK (по умолчанию)
+        if (mode.equals("faststart-appcds")) {
+            command.add("-Xshare:on");
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        if (mode.equals("default"))
+            command.add("-Dspring.index.ignore=true");
+        command.add("-cp");
+        command.add(classpath);
+        command.add("main.Main");
+        if (!mode.equals("default"))
+            command.add("--spring.profiles.active=faststart");
+        command.add("--user.startup.exit-after-ready=true");
+        command.add("--server.port=0");
+        command.add("--spring.datasource.url=jdbc:h2:mem:startup;MODE=MySQL");
+        command.add("--spring.datasource.username=sa");
+        command.add("--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect");
+    }
+
+    @Benchmark
+    public int start() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0)
+            throw new IllegalStateException("Application exited with code " + exitCode);
+        return exitCode;
+    }
+}
@@ -0,0 +1,81 @@
+package main.benchmark;
+
+import main.api.response.UserDTO;
+import main.model.Role;
+import main.model.User;
+import main.model.enums.RoleType;
+import main.repository.projection.UserSummary;
+import main.service.UserMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование данных из БД в UserDTO: страница списка (getAll) и пользователь с ролями (getUser).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMappingBenchmark {
+    @Param({"10", "10000"})
+    private int users;
+
+    private List<UserSummary> page;
+    private User user;
+
+    @Setup
+    public void createUsers() {
+        page = new ArrayList<>(users);
+        for (int i = 0; i < users; i++)
+            page.add(new Summary("login" + i, "name" + i));
+
+        Set<Role> roles = new LinkedHashSet<>();
+        for (RoleType roleType : RoleType.values()) {
+            Role role = new Role();
+            role.setId(roleType.ordinal() + 1);
+            role.setName(roleType);
+            roles.add(role);
+        }
+        user = new User("login", "name", "abcD1", roles);
+    }
+
+    @Benchmark
+    public List<UserDTO> getAllMapping() {
+        List<UserDTO> dtoList = new ArrayList<>(page.size());
+        for (UserSummary summary : page)
+            dtoList.add(UserMapper.toDto(summary));
+        return dtoList;
+    }
+
+    @Benchmark
+    public UserDTO getUserMapping() {
+        return UserMapper.toDtoWithRoles(user);
+    }
+
+    private static class Summary implements UserSummary {
+        private final String login;
+        private final String name;
+
+        Summary(String login, String name) {
+            this.login = login;
+            this.name = name;
+        }
+
+        @Override
+        public String getLogin() {
+            return login;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
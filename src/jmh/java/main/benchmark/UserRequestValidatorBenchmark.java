@@ -0,0 +1,86 @@
+package main.benchmark;
+
+import main.api.request.UserDataRequest;
+import main.model.enums.RoleType;
+import main.service.UserRequestValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение UserRequestValidator с прежней проверкой на регулярных выражениях
+ * (UserServiceImpl.checkErrors/checkStringField, перенесены сюда без изменений).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserRequestValidatorBenchmark {
+    @Param({"valid", "invalid"})
+    private String request;
+
+    private UserDataRequest dto;
+    private final UserRequestValidator validator = new UserRequestValidator();
+
+    @Setup
+    public void createDto() {
+        dto = new UserDataRequest();
+        if (request.equals("valid")) {
+            dto.setLogin("someUserLogin");
+            dto.setName("SomeUserName");
+            dto.setPassword("abcDef12345");
+            dto.setRoles(List.of("USER", "MODERATOR", "OPERATOR"));
+        } else {
+            dto.setLogin("абвгд");
+            dto.setName("abc");
+            dto.setPassword("abcdef");
+            dto.setRoles(List.of("USER", "Invalid_Role"));
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> validator() {
+        return validator.validate(dto);
+    }
+
+    @Benchmark
+    public Map<String, String> legacyCheckErrors() {
+        return checkErrors(dto);
+    }
+
+    private static Map<String, String> checkErrors(UserDataRequest dto) {
+        List<String> roles = dto.getRoles();
+        Map<String, String> errors = new LinkedHashMap<>();
+
+        if (!checkStringField(dto.getLogin()))
+            errors.put("login", "invalid argument");
+        if (!checkStringField(dto.getName()))
+            errors.put("name", "invalid argument");
+        if (!checkStringField(dto.getPassword())
+                || !dto.getPassword().matches(".*[A-Z]+.*")
+                || !dto.getPassword().matches(".*\\d+.*"))
+            errors.put("password", "invalid argument");
+        if (roles != null) {
+            try {
+                for (String role : roles) {
+                    RoleType.valueOf(role);
+                }
+            } catch (IllegalArgumentException e) {
+                errors.put("roles", "invalid argument");
+            }
+        }
+
+        return errors;
+    }
+
+    private static boolean checkStringField(String field) {
+        if (field == null) return false;
+        if (field.length() <= 3) return false;
+        return field.replaceAll("[A-z0-9]+", "").length() <= 0;
+    }
+}
@@ -0,0 +1,115 @@
+package main.benchmark;
+
+import main.Main;
+import main.api.request.UserDataRequest;
+import main.api.response.ResponseAPI;
+import main.service.UserCache;
+import main.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Полный путь через UserServiceImpl (транзакция, Hibernate, JDBC) на встроенной H2 (профиль h2).
+ * В профиле h2 стоимость BCrypt минимальна, чтобы хеширование паролей не заслоняло остальной путь.
+ * getUser после прогрева читает пользователей из UserCache, getUserUncached - из БД (кэш сбрасывается перед каждым
+ * вызовом, время сброса входит в результат, но мало по сравнению с запросом).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+    private static final int USERS = 10_000;
+
+    private final AtomicLong loginSequence = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        SpringApplication application = new SpringApplication(Main.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setAdditionalProfiles("h2");
+        context = application.run();
+        userService = context.getBean(UserService.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++)
+            users.add(new Object[]{login(i), "name" + i, "abcD1"});
+        jdbcTemplate.batchUpdate("INSERT INTO users (login, name, password) VALUES (?, ?, ?)", users);
+        jdbcTemplate.update("INSERT INTO user2role (user_id, role_id) SELECT id, 1 FROM users");
+    }
+
+    @TearDown(Level.Trial)
+    public void closeContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseAPI> getUser() {
+        return userService.getUser(login((int) (loginSequence.incrementAndGet() % USERS)));
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseAPI> getUserUncached(EmptyCache emptyCache) {
+        return userService.getUser(login((int) (loginSequence.incrementAndGet() % USERS)));
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseAPI> getAllFirstPage() {
+        return userService.getAll(null, null);
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseAPI> updateUser() {
+        String login = login((int) (loginSequence.incrementAndGet() % USERS));
+        return userService.updateUser(login, request(login), null).join();
+    }
+
+    @Benchmark
+    public ResponseEntity<ResponseAPI> createAndDeleteUser() {
+        String login = "newUser" + loginSequence.incrementAndGet();
+        userService.createUser(request(login)).join();
+        return userService.deleteUser(login);
+    }
+
+    @State(Scope.Thread)
+    public static class EmptyCache {
+        private UserCache userCache;
+
+        @Setup(Level.Trial)
+        public void findCache(UserServiceBenchmark benchmark) {
+            userCache = benchmark.context.getBean(UserCache.class);
+        }
+
+        @Setup(Level.Invocation)
+        public void invalidate() {
+            userCache.invalidateAll();
+        }
+    }
+
+    private static String login(int i) {
+        return "user" + i;
+    }
+
+    private static UserDataRequest request(String login) {
+        UserDataRequest request = new UserDataRequest();
+        request.setLogin(login);
+        request.setName("name" + login);
+        request.setPassword("abcD1");
+        request.setRoles(List.of("USER", "MODERATOR"));
+        return request;
+    }
+}
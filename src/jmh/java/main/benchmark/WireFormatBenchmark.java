@@ -0,0 +1,94 @@
+package main.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import main.api.request.UserDataRequest;
+import main.api.response.UserDTO;
+import main.api.response.UserListResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Форматы тела запросов и ответов (JSON, CBOR, Smile) с тем же Jackson2ObjectMapperBuilder, что и в приложении:
+ * запись списка пользователей (UserListResponse, GET /user/) и чтение массива UserDataRequest (POST /user/import/).
+ * Размер данных каждого формата, без сжатия и в gzip, выводится при подготовке.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final TypeReference<List<UserDataRequest>> IMPORT_REQUEST = new TypeReference<List<UserDataRequest>>() {
+    };
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"100", "10000"})
+    private int users;
+
+    private ObjectMapper objectMapper;
+    private UserListResponse userListResponse;
+    private byte[] importRequest;
+
+    @Setup
+    public void createPayloads() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (format.equals("cbor"))
+            builder.factory(new CBORFactory());
+        else if (format.equals("smile"))
+            builder.factory(new SmileFactory());
+        objectMapper = builder.build();
+
+        List<UserDTO> dtoList = new ArrayList<>(users);
+        List<UserDataRequest> requests = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            UserDTO dto = new UserDTO();
+            dto.setLogin("login" + i);
+            dto.setName("name" + i);
+            dtoList.add(dto);
+
+            UserDataRequest request = new UserDataRequest();
+            request.setLogin("login" + i);
+            request.setName("name" + i);
+            request.setPassword("Passw0rd" + i);
+            request.setRoles(List.of("USER", "MODERATOR"));
+            requests.add(request);
+        }
+        userListResponse = new UserListResponse(dtoList.size(), dtoList, "login" + (users - 1));
+        importRequest = objectMapper.writeValueAsBytes(requests);
+
+        byte[] response = objectMapper.writeValueAsBytes(userListResponse);
+        System.out.printf("%n%s, %d users: UserListResponse %d bytes (gzip %d), import request %d bytes (gzip %d)%n",
+                format, users, response.length, gzip(response).length, importRequest.length, gzip(importRequest).length);
+    }
+
+    @Benchmark
+    public byte[] writeUserList() throws IOException {
+        return objectMapper.writeValueAsBytes(userListResponse);
+    }
+
+    @Benchmark
+    public List<UserDataRequest> readImportRequest() throws IOException {
+        return objectMapper.readValue(importRequest, IMPORT_REQUEST);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
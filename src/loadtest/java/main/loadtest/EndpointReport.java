@@ -0,0 +1,19 @@
+package main.loadtest;
+
+import lombok.Data;
+
+/**
+ * Итог по одной операции: пропускная способность (запросов в секунду), доля ошибок и перцентили времени ответа (мс).
+ * В этом же формате хранится базовый результат (loadtest.baseline).
+ */
+@Data
+public class EndpointReport {
+    private long requests;
+    private long errors;
+    private double errorRate;
+    private double throughput;
+    private double p50;
+    private double p99;
+    private double p999;
+    private double max;
+}
@@ -0,0 +1,47 @@
+package main.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время ответа (HdrHistogram, мкс) и число запросов и ошибок одной операции.
+ * Каждый виртуальный пользователь ведёт свои экземпляры без синхронизации, по окончании они суммируются.
+ */
+public class EndpointStats {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram latency = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private long requests;
+    private long errors;
+
+    public void record(long latencyNanos, boolean error) {
+        latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS));
+        requests++;
+        if (error)
+            errors++;
+    }
+
+    public void add(EndpointStats other) {
+        latency.add(other.latency);
+        requests += other.requests;
+        errors += other.errors;
+    }
+
+    public EndpointReport toReport(double seconds) {
+        EndpointReport report = new EndpointReport();
+        report.setRequests(requests);
+        report.setErrors(errors);
+        report.setErrorRate(requests == 0 ? 0 : (double) errors / requests);
+        report.setThroughput(requests / seconds);
+        report.setP50(millis(latency.getValueAtPercentile(50)));
+        report.setP99(millis(latency.getValueAtPercentile(99)));
+        report.setP999(millis(latency.getValueAtPercentile(99.9)));
+        report.setMax(millis(latency.getMaxValue()));
+        return report;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
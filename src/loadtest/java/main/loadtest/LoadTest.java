@@ -0,0 +1,186 @@
+package main.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import main.Main;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный тест всех операций UserController через HTTP: Tomcat, Jackson, Hibernate и встроенная H2
+ * в режиме совместимости с MySQL (профиль h2).
+ * Приложение запускается в этом же процессе на свободном порту, начальный набор пользователей (loadtest.seed-users)
+ * загружается через POST /user/import/. Затем loadtest.users виртуальных пользователей выполняют смесь операций
+ * loadtest.mix: loadtest.warmup прогрева без учёта и loadtest.duration замера.
+ * По каждой операции выводятся пропускная способность, доля ошибок и перцентили p50/p99/p99.9 времени ответа,
+ * результат сохраняется в JSON (loadtest.result).
+ * Если задан базовый результат (loadtest.baseline), тест завершается с ошибкой при регрессии по любой операции:
+ * пропускная способность ниже базовой больше чем на loadtest.threshold (доля), p99 выше на столько же
+ * или доля ошибок выше базовой больше чем на loadtest.error-threshold.
+ * Базовый результат зависит от машины; с loadtest.update-baseline=true он перезаписывается текущим.
+ * Запуск: mvn -Ploadtest verify [-Dloadtest.users=...]
+ */
+public class LoadTest {
+    private static final String DEFAULT_MIX = "list=10,get=55,create=10,update=15,delete=10";
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int virtualUsers = Integer.getInteger("loadtest.users", 32);
+        int seedUsers = Integer.getInteger("loadtest.seed-users", 10_000);
+        Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT15S"));
+        Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+        Mix mix = Mix.parse(System.getProperty("loadtest.mix", DEFAULT_MIX));
+        Path result = Paths.get(System.getProperty("loadtest.result", "target/loadtest-result.json"));
+        String baseline = System.getProperty("loadtest.baseline", "");
+        double threshold = Double.parseDouble(System.getProperty("loadtest.threshold", "0.2"));
+        double errorThreshold = Double.parseDouble(System.getProperty("loadtest.error-threshold", "0.01"));
+        boolean updateBaseline = Boolean.getBoolean("loadtest.update-baseline");
+        if (seedUsers < virtualUsers)
+            throw new IllegalArgumentException("loadtest.seed-users must not be less than loadtest.users");
+
+        SpringApplication application = new SpringApplication(Main.class);
+        application.setAdditionalProfiles("h2");
+        Map<String, EndpointReport> reports;
+        try (ConfigurableApplicationContext context = application.run("--server.port=0")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI baseUri = URI.create("http://localhost:" + port + "/");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            seed(client, baseUri, seedUsers);
+            System.out.printf("Load test: %d virtual users, mix %s, warmup %s, duration %s%n",
+                    virtualUsers, mix, warmup, duration);
+            reports = run(client, baseUri, virtualUsers, seedUsers, mix, warmup, duration);
+        }
+
+        print(reports);
+        ObjectMapper objectMapper = new ObjectMapper();
+        if (result.getParent() != null)
+            Files.createDirectories(result.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(result.toFile(), reports);
+        System.out.println("Result: " + result.toAbsolutePath());
+
+        List<String> regressions = new ArrayList<>();
+        if (!baseline.isEmpty()) {
+            Path baselinePath = Paths.get(baseline);
+            if (updateBaseline) {
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(baselinePath.toFile(), reports);
+                System.out.println("Baseline updated: " + baselinePath.toAbsolutePath());
+            } else if (Files.exists(baselinePath)) {
+                Map<String, EndpointReport> baselineReports = objectMapper.readValue(baselinePath.toFile(),
+                        new TypeReference<LinkedHashMap<String, EndpointReport>>() {});
+                regressions = compare(baselineReports, reports, threshold, errorThreshold);
+            } else {
+                System.out.println("Baseline " + baselinePath.toAbsolutePath() + " not found, comparison skipped");
+            }
+        }
+        for (String regression : regressions)
+            System.out.println("REGRESSION " + regression);
+        System.exit(regressions.isEmpty() ? 0 : 1);
+    }
+
+    // Начальный набор пользователей user0..user<n-1> с ролью USER
+    private static void seed(HttpClient client, URI baseUri, int seedUsers) throws IOException, InterruptedException {
+        for (int from = 0; from < seedUsers; from += IMPORT_BATCH_SIZE) {
+            StringJoiner users = new StringJoiner(",", "[", "]");
+            for (int i = from; i < Math.min(from + IMPORT_BATCH_SIZE, seedUsers); i++)
+                users.add(VirtualUser.userJson(VirtualUser.seedLogin(i), "name" + i, "USER"));
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(baseUri.resolve("user/import/"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(users.toString()))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200 || response.body().contains("\"success\":false"))
+                throw new IllegalStateException("Seeding users failed: " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private static Map<String, EndpointReport> run(HttpClient client, URI baseUri, int virtualUsers, int seedUsers,
+                                                   Mix mix, Duration warmup, Duration duration) throws InterruptedException {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long stopAt = measureFrom + duration.toNanos();
+        List<VirtualUser> users = new ArrayList<>(virtualUsers);
+        ExecutorService executor = Executors.newFixedThreadPool(virtualUsers);
+        for (int i = 0; i < virtualUsers; i++) {
+            VirtualUser user = new VirtualUser(i, virtualUsers, seedUsers, client, baseUri, mix, measureFrom, stopAt);
+            users.add(user);
+            executor.execute(user);
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(warmup.plus(duration).plusMinutes(1).toMillis(), TimeUnit.MILLISECONDS))
+            throw new IllegalStateException("Virtual users did not finish");
+
+        Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+        EndpointStats total = new EndpointStats();
+        for (Operation operation : Operation.values()) {
+            if (!mix.includes(operation))
+                continue;
+            EndpointStats operationStats = new EndpointStats();
+            for (VirtualUser user : users)
+                operationStats.add(user.getStats().get(operation));
+            stats.put(operation, operationStats);
+            total.add(operationStats);
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+        Map<String, EndpointReport> reports = new LinkedHashMap<>();
+        for (Map.Entry<Operation, EndpointStats> operationStats : stats.entrySet())
+            reports.put(operationStats.getKey().getEndpoint(), operationStats.getValue().toReport(seconds));
+        reports.put("total", total.toReport(seconds));
+        return reports;
+    }
+
+    private static List<String> compare(Map<String, EndpointReport> baseline, Map<String, EndpointReport> current,
+                                        double threshold, double errorThreshold) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, EndpointReport> expected : baseline.entrySet()) {
+            String endpoint = expected.getKey();
+            EndpointReport base = expected.getValue();
+            EndpointReport actual = current.get(endpoint);
+            if (actual == null)
+                continue;
+            if (actual.getThroughput() < base.getThroughput() * (1 - threshold))
+                regressions.add(String.format("%s: throughput %.1f/s, baseline %.1f/s",
+                        endpoint, actual.getThroughput(), base.getThroughput()));
+            if (actual.getP99() > base.getP99() * (1 + threshold))
+                regressions.add(String.format("%s: p99 %.2f ms, baseline %.2f ms", endpoint, actual.getP99(), base.getP99()));
+            if (actual.getErrorRate() > base.getErrorRate() + errorThreshold)
+                regressions.add(String.format("%s: error rate %.4f, baseline %.4f",
+                        endpoint, actual.getErrorRate(), base.getErrorRate()));
+        }
+        return regressions;
+    }
+
+    private static void print(Map<String, EndpointReport> reports) {
+        System.out.printf("%-22s %10s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, EndpointReport> entry : reports.entrySet()) {
+            EndpointReport report = entry.getValue();
+            System.out.printf("%-22s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", entry.getKey(),
+                    report.getRequests(), report.getErrors(), report.getThroughput(),
+                    report.getP50(), report.getP99(), report.getP999(), report.getMax());
+        }
+    }
+}
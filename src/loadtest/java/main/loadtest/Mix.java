@@ -0,0 +1,62 @@
+package main.loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Доли операций в нагрузке, например "list=20,get=50,create=10,update=15,delete=5" (веса, не обязательно проценты).
+ * Операции без веса не выполняются.
+ */
+class Mix {
+    private final Map<Operation, Integer> weights;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private Mix(Map<Operation, Integer> weights) {
+        this.weights = weights;
+        this.operations = weights.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += weights.get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+        if (sum == 0)
+            throw new IllegalArgumentException("Mix has no operations");
+    }
+
+    static Mix parse(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] operationAndWeight = part.trim().split("=");
+            if (operationAndWeight.length != 2)
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            int weight = Integer.parseInt(operationAndWeight[1].trim());
+            if (weight < 0)
+                throw new IllegalArgumentException("Negative weight: " + part);
+            if (weight > 0)
+                weights.put(Operation.valueOf(operationAndWeight[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        return new Mix(weights);
+    }
+
+    boolean includes(Operation operation) {
+        return weights.containsKey(operation);
+    }
+
+    Operation next(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i])
+                return operations[i];
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public String toString() {
+        return weights.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package main.loadtest;
+
+/**
+ * Операции UserController, из которых составляется нагрузка (loadtest.mix).
+ */
+public enum Operation {
+    LIST("GET /user/"),
+    GET("GET /user/{login}"),
+    CREATE("POST /user/add/"),
+    UPDATE("PUT /user/{login}"),
+    DELETE("DELETE /user/{login}");
+
+    private final String endpoint;
+
+    Operation(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
@@ -0,0 +1,137 @@
+package main.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Виртуальный пользователь: в цикле без пауз выполняет операции, выбранные случайно по весам loadtest.mix,
+ * пока не истечёт время теста. Следующий запрос отправляется после ответа на предыдущий (закрытая модель нагрузки).
+ * Чтобы запросы разных пользователей не конфликтовали, каждый изменяет только свои записи:
+ * редактирует пользователей из начального набора с номером index по модулю числа виртуальных пользователей
+ * и удаляет только созданных им самим (пока таких нет, вместо удаления выполняется создание).
+ */
+class VirtualUser implements Runnable {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final String PASSWORD = "Passw0rd";
+
+    private final int index;
+    private final int virtualUsers;
+    private final int seedUsers;
+    private final HttpClient client;
+    private final URI baseUri;
+    private final Mix mix;
+    private final long measureFromNanos;
+    private final long stopAtNanos;
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+    private final Deque<String> created = new ArrayDeque<>();
+    private final Random random;
+    private long sequence;
+
+    VirtualUser(int index, int virtualUsers, int seedUsers, HttpClient client, URI baseUri, Mix mix,
+                long measureFromNanos, long stopAtNanos) {
+        this.index = index;
+        this.virtualUsers = virtualUsers;
+        this.seedUsers = seedUsers;
+        this.client = client;
+        this.baseUri = baseUri;
+        this.mix = mix;
+        this.measureFromNanos = measureFromNanos;
+        this.stopAtNanos = stopAtNanos;
+        this.random = new Random(index);
+        for (Operation operation : Operation.values())
+            stats.put(operation, new EndpointStats());
+    }
+
+    Map<Operation, EndpointStats> getStats() {
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        long start;
+        while ((start = System.nanoTime()) < stopAtNanos) {
+            Operation operation = mix.next(random);
+            if (operation == Operation.DELETE && created.isEmpty())
+                operation = Operation.CREATE;
+            boolean error;
+            try {
+                error = !execute(operation);
+            } catch (IOException e) {
+                error = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long end = System.nanoTime();
+            // Запросы, начатые во время прогрева, не учитываются
+            if (start >= measureFromNanos)
+                stats.get(operation).record(end - start, error);
+        }
+    }
+
+    // true - успешный ответ: статус 2xx и нет "success":false (ошибки проверки полей возвращаются со статусом 200)
+    private boolean execute(Operation operation) throws IOException, InterruptedException {
+        String login = null;
+        HttpRequest.Builder request;
+        switch (operation) {
+            case LIST:
+                request = HttpRequest.newBuilder(baseUri.resolve("user/")).GET();
+                break;
+            case GET:
+                request = HttpRequest.newBuilder(baseUri.resolve("user/" + seedLogin(random.nextInt(seedUsers)))).GET();
+                break;
+            case CREATE:
+                login = "vu" + index + "n" + sequence++;
+                request = HttpRequest.newBuilder(baseUri.resolve("user/add/"))
+                        .POST(json(userJson(login, "Name" + sequence, "USER")));
+                break;
+            case UPDATE:
+                login = seedLogin(ownSeedUser());
+                request = HttpRequest.newBuilder(baseUri.resolve("user/" + login))
+                        .PUT(json(userJson(login, "Renamed" + sequence++, random.nextBoolean() ? "USER" : "MODERATOR")));
+                break;
+            case DELETE:
+                request = HttpRequest.newBuilder(baseUri.resolve("user/" + created.peekFirst())).DELETE();
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+
+        HttpResponse<String> response = client.send(request.timeout(REQUEST_TIMEOUT)
+                        .header("Content-Type", "application/json").build(),
+                HttpResponse.BodyHandlers.ofString());
+        boolean success = response.statusCode() / 100 == 2 && !response.body().contains("\"success\":false");
+        if (success && operation == Operation.CREATE)
+            created.addLast(login);
+        else if (success && operation == Operation.DELETE)
+            created.removeFirst();
+        return success;
+    }
+
+    private int ownSeedUser() {
+        int owned = (seedUsers - index + virtualUsers - 1) / virtualUsers;
+        return index + random.nextInt(owned) * virtualUsers;
+    }
+
+    static String seedLogin(int i) {
+        return "user" + i;
+    }
+
+    static String userJson(String login, String name, String role) {
+        return "{\"login\":\"" + login + "\",\"name\":\"" + name + "\",\"password\":\"" + PASSWORD
+                + "\",\"roles\":[\"" + role + "\"]}";
+    }
+
+    private static HttpRequest.BodyPublisher json(String body) {
+        return HttpRequest.BodyPublishers.ofString(body);
+    }
+}
@@ -1,16 +1,26 @@
 package main.api.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class UserListResponse implements ResponseAPI {
     private long count;
     private List<UserDTO> users;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
 
     public UserListResponse(long count, List<UserDTO> users) {
         this.count = count;
         this.users = users;
     }
 
+    public UserListResponse(long count, List<UserDTO> users, String nextCursor) {
+        this.count = count;
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
     public long getCount() {
         return count;
     }
@@ -18,4 +28,8 @@ public class UserListResponse implements ResponseAPI {
     public List<UserDTO> getUsers() {
         return users;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
 }
@@ -0,0 +1,23 @@
+package main.api.response;
+
+import main.model.enums.RoleType;
+
+import java.util.Map;
+
+public class UserStatsResponse implements ResponseAPI {
+    private long total;
+    private Map<RoleType, Long> roles;
+
+    public UserStatsResponse(long total, Map<RoleType, Long> roles) {
+        this.total = total;
+        this.roles = roles;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<RoleType, Long> getRoles() {
+        return roles;
+    }
+}
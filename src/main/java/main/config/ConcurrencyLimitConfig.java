@@ -0,0 +1,67 @@
+package main.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import main.filter.AimdLimiter;
+import main.filter.ConcurrencyLimitFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// Ограничение одновременных запросов к /user/ (user.concurrency.*): отдельный предел у каждого обработчика.
+// Метрики: user.concurrency.limit, user.concurrency.in-flight, user.concurrency.rejected с тегом endpoint
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "user.concurrency.enabled", havingValue = "true")
+public class ConcurrencyLimitConfig {
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            Environment environment,
+            MeterRegistry registry,
+            @Value("${user.concurrency.retry-after:1s}") Duration retryAfter) {
+        Map<String, AimdLimiter> limiters = new HashMap<>();
+        for (String endpoint : ConcurrencyLimitFilter.ENDPOINTS)
+            limiters.put(endpoint, limiter(environment, endpoint, registry));
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(limiters, Math.max(1, retryAfter.getSeconds()),
+                endpoint -> registry.counter("user.concurrency.rejected", "endpoint", endpoint).increment());
+
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/user/*");
+        return registration;
+    }
+
+    // Параметры обработчика: user.concurrency.<endpoint>.initial-limit, min-limit, max-limit, latency-threshold,
+    // backoff-ratio; не заданные для обработчика берутся у его группы user.concurrency.<read|write>.*
+    private static AimdLimiter limiter(Environment environment, String endpoint, MeterRegistry registry) {
+        String group = endpoint.equals("list") || endpoint.equals("get") ? "read" : "write";
+        AimdLimiter limiter = new AimdLimiter(
+                property(environment, endpoint, group, "initial-limit", Integer.class, 20),
+                property(environment, endpoint, group, "min-limit", Integer.class, 1),
+                property(environment, endpoint, group, "max-limit", Integer.class, 200),
+                property(environment, endpoint, group, "latency-threshold", Duration.class, Duration.ofMillis(500)).toNanos(),
+                property(environment, endpoint, group, "backoff-ratio", Double.class, 0.9));
+        Gauge.builder("user.concurrency.limit", limiter, AimdLimiter::getLimit)
+                .tag("endpoint", endpoint)
+                .description("Current adaptive concurrency limit")
+                .register(registry);
+        Gauge.builder("user.concurrency.in-flight", limiter, AimdLimiter::getInFlight)
+                .tag("endpoint", endpoint)
+                .description("Requests currently admitted")
+                .register(registry);
+        return limiter;
+    }
+
+    private static <T> T property(Environment environment, String endpoint, String group, String name, Class<T> type,
+                                  T defaultValue) {
+        T value = environment.getProperty("user.concurrency." + endpoint + "." + name, type);
+        return value != null ? value : environment.getProperty("user.concurrency." + group + "." + name, type, defaultValue);
+    }
+}
@@ -0,0 +1,18 @@
+package main.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+// Завершение приложения сразу после старта (user.startup.exit-after-ready=true): обучающий запуск
+// для списка классов AppCDS и замер времени старта (Maven-профиль faststart, StartupBenchmark)
+@Configuration
+@ConditionalOnProperty(name = "user.startup.exit-after-ready", havingValue = "true")
+public class ExitAfterStartupConfig {
+    @EventListener(ApplicationReadyEvent.class)
+    public void exit(ApplicationReadyEvent event) {
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
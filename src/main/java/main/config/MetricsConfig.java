@@ -0,0 +1,15 @@
+package main.config;
+
+import main.metrics.OperationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+
+@Configuration
+public class MetricsConfig {
+    // Продолжения UserService на applicationTaskExecutor учитываются в метриках Hibernate под своей операцией
+    @Bean
+    public TaskDecorator operationContextTaskDecorator() {
+        return OperationContext::wrap;
+    }
+}
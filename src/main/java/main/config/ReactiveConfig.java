@@ -0,0 +1,114 @@
+package main.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Option;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.transaction.ReactiveTransactionManager;
+
+import java.util.Objects;
+
+/**
+ * Реактивный вариант приложения (профиль reactive): WebFlux на Netty и R2DBC вместо Spring MVC и JPA.
+ * Пул соединений и драйвер задаются URL в user.r2dbc.url (например, r2dbc:pool:mysql://...).
+ * Схема БД создаётся и обновляется при старте миграциями Flyway через JDBC (поддерживаются MySQL и H2).
+ */
+@Configuration
+@Profile("reactive")
+@EnableR2dbcRepositories(basePackages = "main.repository.reactive")
+public class ReactiveConfig extends AbstractR2dbcConfiguration {
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Value("${user.r2dbc.url}")
+    private String url;
+
+    @Value("${spring.flyway.baseline-on-migrate:false}")
+    private boolean baselineOnMigrate;
+    @Value("${spring.flyway.baseline-version:1}")
+    private String baselineVersion;
+
+    @Override
+    @Bean
+    @DependsOn("flyway")
+    public ConnectionFactory connectionFactory() {
+        return ConnectionFactories.get(url);
+    }
+
+    // Схема БД - те же миграции Flyway из db/migration/<mysql|h2>, что и у основного варианта, по JDBC-адресу
+    // той же базы, построенному из user.r2dbc.url. Выполняются при старте до создания пула R2DBC
+    @Bean(initMethod = "migrate")
+    public Flyway flyway() {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url);
+        String vendor = vendor(options);
+        return Flyway.configure()
+                .dataSource(jdbcUrl(vendor, options), Objects.toString(options.getValue(ConnectionFactoryOptions.USER), null),
+                        Objects.toString(options.getValue(ConnectionFactoryOptions.PASSWORD), null))
+                .locations("classpath:db/migration/" + vendor)
+                .baselineOnMigrate(baselineOnMigrate)
+                .baselineVersion(baselineVersion)
+                .load();
+    }
+
+    @Bean
+    public ReactiveTransactionManager reactiveTransactionManager(ConnectionFactory connectionFactory) {
+        return new R2dbcTransactionManager(connectionFactory);
+    }
+
+    // Netty вместо Tomcat: при наличии в classpath обоих серверов Spring Boot выбрал бы Tomcat
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    // NDJSON для импорта пользователей: декодер Jackson читает последовательность JSON-объектов потоком.
+    // Применяется после настройки кодеков Jackson в Spring Boot, иначе будет ею перезаписан
+    @Bean
+    @Order(1)
+    public CodecCustomizer ndjsonCodecCustomizer(ObjectMapper objectMapper) {
+        return configurer -> configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper,
+                MediaType.APPLICATION_JSON, new MediaType("application", "*+json"), APPLICATION_NDJSON));
+    }
+
+    // Драйвер R2DBC: r2dbc:mysql://... или r2dbc:pool:mysql://... (тогда драйвер - в протоколе)
+    private static String vendor(ConnectionFactoryOptions options) {
+        String driver = (String) options.getRequiredValue(ConnectionFactoryOptions.DRIVER);
+        if (driver.equals("pool"))
+            driver = ((String) options.getRequiredValue(ConnectionFactoryOptions.PROTOCOL)).split(":")[0];
+        return driver;
+    }
+
+    private static String jdbcUrl(String vendor, ConnectionFactoryOptions options) {
+        String database = (String) options.getRequiredValue(ConnectionFactoryOptions.DATABASE);
+        switch (vendor) {
+            case "mysql": {
+                Object port = options.getValue(ConnectionFactoryOptions.PORT);
+                return "jdbc:mysql://" + options.getRequiredValue(ConnectionFactoryOptions.HOST)
+                        + (port == null ? "" : ":" + port) + "/" + database + "?createDatabaseIfNotExist=true";
+            }
+            case "h2": {
+                // r2dbc:h2:mem:///<база>?options=<параметры H2 через ;>
+                String protocol = (String) options.getRequiredValue(ConnectionFactoryOptions.PROTOCOL);
+                String h2Options = (String) options.getValue(Option.valueOf("options"));
+                return "jdbc:h2:" + protocol.substring(protocol.lastIndexOf(':') + 1) + ":" + database
+                        + (h2Options == null ? "" : ";" + h2Options);
+            }
+            default:
+                throw new IllegalStateException("Schema migration is not supported for R2DBC driver " + vendor);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package main.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import main.datasource.ReplicaRoutingDataSource;
+import main.filter.ReadYourWritesFilter;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Чтение с реплики (включается заданием user.datasource.replica.url): отдельные пулы основной БД (spring.datasource.*)
+// и реплики (user.datasource.replica.*), маршрутизация read-only транзакций GET-запросов на реплику.
+// Метрики пулов - hikaricp.* с тегом pool (primary/replica), переключения на основную БД - user.datasource.replica.fallbacks
+@Configuration
+@Profile("!reactive & !embedded")
+@ConditionalOnProperty(name = "user.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+    // Пулы не регистрируются отдельными бинами DataSource: иначе инициализация схемы Spring Boot
+    // запускается для каждого из них и требует основной DataSource, который ещё создаётся
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+                                 Environment environment,
+                                 MeterRegistry registry,
+                                 @Value("${user.datasource.replica.migrate:false}") boolean migrateReplica,
+                                 @Value("${user.datasource.replica.retry-interval:5s}") Duration retryInterval) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        configurePool(primary, "primary", "spring.datasource.hikari", environment, registry);
+
+        HikariDataSource replica = new HikariDataSource();
+        replica.setJdbcUrl(environment.getRequiredProperty("user.datasource.replica.url"));
+        replica.setUsername(environment.getProperty("user.datasource.replica.username"));
+        replica.setPassword(environment.getProperty("user.datasource.replica.password"));
+        configurePool(replica, "replica", "user.datasource.replica.hikari", environment, registry);
+        // Миграции Flyway на реплике - только для локального запуска и тестов (на реальную реплику схема приходит репликацией)
+        if (migrateReplica)
+            Flyway.configure()
+                    .dataSource(replica)
+                    .locations("classpath:db/migration/" + DatabaseDriver.fromJdbcUrl(replica.getJdbcUrl()).getId())
+                    .load()
+                    .migrate();
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replica, retryInterval);
+        FunctionCounter.builder("user.datasource.replica.fallbacks", routing, ReplicaRoutingDataSource::getFallbackCount)
+                .description("Reads sent to primary because the replica was unavailable")
+                .register(registry);
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${user.datasource.read-your-writes-window:5s}") Duration window,
+            @Value("${user.datasource.read-your-writes-clients:100000}") long maximumClients) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(window, maximumClients));
+        registration.addUrlPatterns("/user/*");
+        return registration;
+    }
+
+    @PreDestroy
+    public void closePools() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    // Настройки пула из <prefix>.* (как spring.datasource.hikari.*) и метрики hikaricp.* с тегом pool
+    private void configurePool(HikariDataSource pool, String name, String prefix, Environment environment,
+                               MeterRegistry registry) {
+        Binder.get(environment).bind(prefix, Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        pools.add(pool);
+    }
+}
@@ -0,0 +1,10 @@
+package main.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Периодические задачи (@Scheduled): сверка UserCounters с БД
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,94 @@
+package main.controller;
+
+import main.api.request.UserDataRequest;
+import main.api.response.ResponseAPI;
+import main.service.ReactiveUserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// Те же адреса и JSON, что у UserController, для реактивного варианта (профиль reactive).
+// Тип тела ответа объявлен как <?>, чтобы WebFlux выбирал кодек по фактическому классу ответа, а не по ResponseAPI
+@RestController
+@Profile("reactive")
+@RequestMapping("user/")
+public class ReactiveUserController {
+    @Autowired
+    private ReactiveUserService userService;
+
+    //1. Получать список пользователей из БД (без ролей)
+    // Постраничная выдача: limit - размер страницы, after - login последнего пользователя предыдущей страницы
+    // role - только пользователи с этой ролью
+    @GetMapping()
+    public Mono<? extends ResponseEntity<?>> getAllUsers(@RequestParam(value = "limit", required = false) Integer limit,
+                                                         @RequestParam(value = "after", required = false) String after,
+                                                         @RequestParam(value = "role", required = false) String role) {
+        if (role != null)
+            return userService.getAllByRole(role, limit, after);
+        return userService.getAll(limit, after);
+    }
+
+    //1a. Поиск пользователей по подстроке login или name (до трёх символов - по префиксу), постранично как в списке
+    @GetMapping(value = "search")
+    public Mono<? extends ResponseEntity<?>> search(@RequestParam(value = "q") String query,
+                                                    @RequestParam(value = "limit", required = false) Integer limit,
+                                                    @RequestParam(value = "after", required = false) String after) {
+        return userService.search(query, limit, after);
+    }
+
+    //1b. Число пользователей, всего и по ролям, без выборки списка
+    @GetMapping(value = "stats")
+    public Mono<? extends ResponseEntity<?>> getStats() {
+        return userService.getStats();
+    }
+
+    //2. Получать конкретного пользователя (с его ролями) из БД
+    @GetMapping(value = "{login}")
+    public Mono<? extends ResponseEntity<?>> getUser(@PathVariable("login") String login) {
+        return userService.getUser(login);
+    }
+
+    //3. Удалять пользователя в БД
+    @DeleteMapping(value = "{login}")
+    public Mono<? extends ResponseEntity<?>> deleteUser(@PathVariable("login") String login) {
+        return userService.deleteUser(login);
+    }
+
+    //4. Добавлять нового пользователя с ролями в БД.
+    @PostMapping(value = "add/")
+    public Mono<? extends ResponseEntity<?>> addUser(@RequestBody UserDataRequest registerDto) {
+        return userService.createUser(registerDto);
+    }
+
+    //5. Редактировать существующего пользователя в БД.
+    @PutMapping(value = "{login}")
+    public Mono<? extends ResponseEntity<?>> editUser(@PathVariable("login") String login,
+                                                      @RequestBody UserDataRequest editDto) {
+        return userService.updateUser(login, editDto);
+    }
+
+    //6. Массовый импорт пользователей: JSON-массив UserDataRequest
+    @PostMapping(value = "import/", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<? extends ResponseEntity<?>> importUsers(@RequestBody List<UserDataRequest> importDto) {
+        return userService.importUsers(importDto);
+    }
+
+    //   или NDJSON - по одному UserDataRequest в строке, читается потоком
+    @PostMapping(value = "import/", consumes = "application/x-ndjson")
+    public Mono<? extends ResponseEntity<?>> importUsersNdjson(@RequestBody Flux<UserDataRequest> importDto) {
+        return importDto.collectList().flatMap(userService::importUsers);
+    }
+
+    //7. Проверить пароль пользователя (передаётся в поле password)
+    @PostMapping(value = "{login}/verify")
+    public Mono<? extends ResponseEntity<?>> verifyPassword(@PathVariable("login") String login,
+                                                            @RequestBody UserDataRequest verifyDto) {
+        return userService.verifyPassword(login, verifyDto.getPassword());
+    }
+}
@@ -1,28 +1,146 @@
 package main.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import main.api.request.UserDataRequest;
+import main.api.response.BooleanResponseDTO;
 import main.api.response.ResponseAPI;
+import main.service.ETags;
+import main.service.UserListSnapshot;
 import main.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("user/")
 public class UserController {
+    private static final String SMILE_VALUE = "application/x-jackson-smile";
+    private static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+    private static final int NDJSON_CHUNK = 1000;
+
     @Autowired
     private UserService userService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired(required = false)
+    private UserListSnapshot userListSnapshot;
 
     //1. Получать список пользователей из БД (без ролей)
+    // Постраничная выдача: limit - размер страницы, after - login последнего пользователя предыдущей страницы
+    // role - только пользователи с этой ролью
+    // Ответ с ETag; при совпадении If-None-Match - 304 без тела после проверки только счётчика изменений таблицы
     @GetMapping()
-    public ResponseEntity<ResponseAPI> getAllUsers() {
-        return userService.getAll();
+    public ResponseEntity<?> getAllUsers(@RequestParam(value = "limit", required = false) Integer limit,
+                                         @RequestParam(value = "after", required = false) String after,
+                                         @RequestParam(value = "role", required = false) String role,
+                                         WebRequest request) {
+        String representation = representation(request);
+        // Первая страница из готового снимка (user.list-snapshot.enabled): после проверки только счётчика изменений
+        // таблицы, без выборки и сериализации. Снимок в JSON, поэтому только если клиент предпочитает JSON
+        // (CBOR/Smile собираются как обычно); отставший от БД снимок не отдаётся
+        UserListSnapshot.Snapshot snapshot = userListSnapshot == null || limit != null || after != null || role != null
+                || representation != null ? null : userListSnapshot.get();
+        if (snapshot != null && snapshot.getEtag().equals(userService.getAllETag()))
+            return writeSnapshot(snapshot, request);
+
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(ETags.forRepresentation(
+                role == null ? userService.getAllETag() : userService.getAllByRoleETag(role), representation)))
+            return null;
+        if (role != null)
+            return forRepresentation(userService.getAllByRole(role, limit, after), representation);
+        return forRepresentation(userService.getAll(limit, after), representation);
+    }
+
+    // Представление ответа по наиболее предпочтительному типу из Accept: null - JSON (в том числе */* или без
+    // заголовка), "cbor" или "smile". Входит в ETag: у разных форматов одного ответа ETag разные
+    private static String representation(WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null)
+            return null;
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        if (mediaTypes.isEmpty() || mediaTypes.get(0).isCompatibleWith(MediaType.APPLICATION_JSON))
+            return null;
+        if (mediaTypes.get(0).isCompatibleWith(MediaType.APPLICATION_CBOR))
+            return "cbor";
+        if (mediaTypes.get(0).isCompatibleWith(SMILE))
+            return "smile";
+        return null;
+    }
+
+    private static <T> ResponseEntity<T> forRepresentation(ResponseEntity<T> response, String representation) {
+        String etag = response.getHeaders().getETag();
+        if (etag == null || representation == null)
+            return response;
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.setETag(ETags.forRepresentation(etag, representation));
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    // Сжатый и несжатый снимок - разные представления с разными ETag
+    private ResponseEntity<byte[]> writeSnapshot(UserListSnapshot.Snapshot snapshot, WebRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = snapshot.getGzippedJson() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = gzip ? ETags.forRepresentation(snapshot.getEtag(), "gzip") : snapshot.getEtag();
+        if (request.checkNotModified(etag))
+            return null;
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag);
+        if (snapshot.getGzippedJson() == null)
+            return response.body(snapshot.getJson());
+        response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip)
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzippedJson());
+        return response.body(snapshot.getJson());
+    }
+
+    //1a. Поиск пользователей по подстроке login или name (до трёх символов - по префиксу), постранично как в списке
+    @GetMapping(value = "search")
+    public ResponseEntity<ResponseAPI> search(@RequestParam(value = "q") String query,
+                                              @RequestParam(value = "limit", required = false) Integer limit,
+                                              @RequestParam(value = "after", required = false) String after) {
+        return userService.search(query, limit, after);
+    }
+
+    //1b. Число пользователей, всего и по ролям, без выборки списка
+    @GetMapping(value = "stats")
+    public ResponseEntity<ResponseAPI> getStats() {
+        return userService.getStats();
     }
 
     //2. Получать конкретного пользователя (с его ролями) из БД
+    // Ответ с ETag; при совпадении If-None-Match - 304 без тела после проверки только версии пользователя
     @GetMapping(value = "{login}")
-    public ResponseEntity<ResponseAPI> getUser(@PathVariable("login") String login) {
-        return userService.getUser(login);
+    public ResponseEntity<ResponseAPI> getUser(@PathVariable("login") String login, WebRequest request) {
+        String representation = representation(request);
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(ETags.forRepresentation(userService.getUserETag(login), representation)))
+            return null;
+        return forRepresentation(userService.getUser(login), representation);
     }
 
     //3. Удалять пользователя в БД
@@ -33,16 +151,88 @@ public class UserController {
 
     //4. Добавлять нового пользователя с ролями в БД.
     @PostMapping(value = "add/")
-    public ResponseEntity<ResponseAPI> addUser(@RequestBody UserDataRequest registerDto) {
+    public CompletableFuture<ResponseEntity<ResponseAPI>> addUser(@RequestBody UserDataRequest registerDto) {
         return userService.createUser(registerDto);
     }
 
     //5. Редактировать существующего пользователя в БД.
     // Если в запросе на редактирование передан массив ролей, система должна обновить
     // список ролей пользователя в БД - новые привязки добавить, неактуальные привязки удалить.
+    // Без password в запросе пароль не меняется.
+    // С заголовком If-Match изменение выполняется, только если ETag пользователя не изменился, иначе 412
     @PutMapping(value = "{login}")
-    public ResponseEntity<ResponseAPI> editUser(@PathVariable("login") String login,
-                                                @RequestBody UserDataRequest editDto) {
-        return userService.updateUser(login, editDto);
+    public CompletableFuture<ResponseEntity<ResponseAPI>> editUser(@PathVariable("login") String login,
+                                                                   @RequestBody UserDataRequest editDto,
+                                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                   WebRequest request) {
+        String representation = representation(request);
+        return userService.updateUser(login, editDto, ifMatch)
+                .thenApply(response -> forRepresentation(response, representation));
+    }
+
+    //6. Массовый импорт пользователей: массив UserDataRequest в JSON (или CBOR, Smile)
+    @PostMapping(value = "import/", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            SMILE_VALUE})
+    public CompletableFuture<ResponseEntity<ResponseAPI>> importUsers(@RequestBody List<UserDataRequest> importDto) {
+        return userService.importUsers(importDto);
+    }
+
+    //   или NDJSON - по одному UserDataRequest в строке, читается потоком и импортируется частями
+    //   по NDJSON_CHUNK записей (каждая часть - отдельный импорт, номера записей в ошибках сквозные).
+    //   Части импортируются цепочкой: следующая читается после завершения импорта предыдущей, без ожидания
+    //   в потоке запроса, в памяти не больше одной части
+    @PostMapping(value = "import/", consumes = "application/x-ndjson")
+    public CompletableFuture<ResponseEntity<ResponseAPI>> importUsersNdjson(InputStream body) throws IOException {
+        MappingIterator<UserDataRequest> records = objectMapper.readerFor(UserDataRequest.class).readValues(body);
+        Map<String, String> errors = new LinkedHashMap<>();
+        CompletableFuture<Void> imported;
+        try {
+            imported = importNdjsonChunks(records, errors, 0);
+        } catch (RuntimeException e) {
+            records.close();
+            throw e;
+        }
+        return imported
+                .whenComplete((result, e) -> closeQuietly(records))
+                .thenApply(result -> new ResponseEntity<>(
+                        errors.isEmpty() ? new BooleanResponseDTO(true) : new BooleanResponseDTO(errors), HttpStatus.OK));
+    }
+
+    // Импорт очередной части и, после его завершения, следующих; imported - число записей в предыдущих частях
+    private CompletableFuture<Void> importNdjsonChunks(MappingIterator<UserDataRequest> records, Map<String, String> errors,
+                                                       int imported) {
+        List<UserDataRequest> chunk = new ArrayList<>(NDJSON_CHUNK);
+        while (chunk.size() < NDJSON_CHUNK && records.hasNext())
+            chunk.add(records.next());
+        if (chunk.isEmpty())
+            return CompletableFuture.completedFuture(null);
+        return userService.importUsers(chunk).thenCompose(response -> {
+            ResponseAPI body = response.getBody();
+            Map<String, String> chunkErrors = body instanceof BooleanResponseDTO
+                    ? ((BooleanResponseDTO) body).getErrors() : null;
+            if (chunkErrors != null) {
+                for (Map.Entry<String, String> error : chunkErrors.entrySet()) {
+                    int dot = error.getKey().indexOf('.');
+                    errors.put((imported + Integer.parseInt(error.getKey().substring(0, dot)))
+                            + error.getKey().substring(dot), error.getValue());
+                }
+            }
+            return importNdjsonChunks(records, errors, imported + chunk.size());
+        });
+    }
+
+    private static void closeQuietly(MappingIterator<?> records) {
+        try {
+            records.close();
+        } catch (IOException e) {
+            // поток запроса закрывает контейнер
+        }
+    }
+
+    //7. Проверить пароль пользователя (передаётся в поле password)
+    @PostMapping(value = "{login}/verify")
+    public CompletableFuture<ResponseEntity<ResponseAPI>> verifyPassword(@PathVariable("login") String login,
+                                                                         @RequestBody UserDataRequest verifyDto) {
+        return userService.verifyPassword(login, verifyDto.getPassword());
     }
 }
@@ -0,0 +1,37 @@
+package main.datasource;
+
+import java.util.function.Supplier;
+
+// Разрешение текущему потоку читать с реплики: выставляется ReadYourWritesFilter на время GET-запроса клиента,
+// не выполнявшего изменений в последние user.datasource.read-your-writes-window.
+// Без разрешения (изменения, асинхронные продолжения, фоновые задачи) все соединения берутся с основной БД
+public final class ReadRouting {
+    private static final ThreadLocal<Boolean> REPLICA_ALLOWED = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    public static boolean isReplicaAllowed() {
+        return REPLICA_ALLOWED.get() != null;
+    }
+
+    public static void allowReplica() {
+        REPLICA_ALLOWED.set(Boolean.TRUE);
+    }
+
+    public static void reset() {
+        REPLICA_ALLOWED.remove();
+    }
+
+    // Выполнить чтение на основной БД даже внутри разрешённого для реплики запроса
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean allowed = REPLICA_ALLOWED.get();
+        REPLICA_ALLOWED.remove();
+        try {
+            return action.get();
+        } finally {
+            if (allowed != null)
+                REPLICA_ALLOWED.set(allowed);
+        }
+    }
+}
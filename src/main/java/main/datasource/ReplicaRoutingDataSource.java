@@ -0,0 +1,75 @@
+package main.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Соединения с репликой для read-only транзакций потоков с ReadRouting.isReplicaAllowed(), остальные - с основной БД.
+ * Признак read-only транзакции выставляется после её начала, поэтому источник оборачивается
+ * в LazyConnectionDataSourceProxy: реальное соединение берётся при первом запросе.
+ * Если реплика недоступна, соединение берётся с основной БД, и реплика не используется retryInterval.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long retryIntervalNanos;
+    private final AtomicLong fallbacks = new AtomicLong();
+    private volatile long replicaDownUntil;
+    private volatile boolean replicaDown;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, Duration retryInterval) {
+        this.primary = primary;
+        this.replica = replica;
+        this.retryIntervalNanos = retryInterval.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!useReplica())
+            return primary.getConnection();
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            markReplicaDown();
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (!useReplica())
+            return primary.getConnection(username, password);
+        try {
+            return replica.getConnection(username, password);
+        } catch (SQLException e) {
+            markReplicaDown();
+            return primary.getConnection(username, password);
+        }
+    }
+
+    private boolean useReplica() {
+        if (!ReadRouting.isReplicaAllowed() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+            return false;
+        if (replicaDown && System.nanoTime() - replicaDownUntil < 0)
+            return false;
+        replicaDown = false;
+        return true;
+    }
+
+    // Сколько раз реплика оказалась недоступна и чтение ушло на основную БД
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    private void markReplicaDown() {
+        fallbacks.incrementAndGet();
+        replicaDownUntil = System.nanoTime() + retryIntervalNanos;
+        replicaDown = true;
+    }
+}
@@ -0,0 +1,38 @@
+package main.exceptions;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.RejectedExecutionException;
+
+// Те же ответы об ошибках, что у ResponseExceptionHandler, для реактивного варианта (без тела ответа)
+@ControllerAdvice
+@Profile("reactive")
+public class ReactiveResponseExceptionHandler {
+    @ExceptionHandler({IllegalArgumentException.class})
+    private ResponseEntity<Object> badRequest() {
+        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    // Пул хеширования паролей переполнен
+    @ExceptionHandler({RejectedExecutionException.class})
+    private ResponseEntity<Object> serviceUnavailable() {
+        return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // Пользователь изменён параллельным запросом (проверка версии строки)
+    @ExceptionHandler({OptimisticLockingFailureException.class})
+    private ResponseEntity<Object> conflict() {
+        return new ResponseEntity<>(HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler({ResponseStatusException.class})
+    private ResponseEntity<Object> requestWithStatus(ResponseStatusException ex) {
+        return new ResponseEntity<>(ex.getStatus());
+    }
+}
@@ -1,5 +1,7 @@
 package main.exceptions;
 
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -7,13 +9,28 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import java.util.concurrent.RejectedExecutionException;
+
 @ControllerAdvice
+@Profile("!reactive")
 public class ResponseExceptionHandler extends ResponseEntityExceptionHandler {
     @ExceptionHandler({IllegalArgumentException.class})
     private ResponseEntity<Object> badRequest() {
         return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
     }
 
+    // Пул хеширования паролей переполнен
+    @ExceptionHandler({RejectedExecutionException.class})
+    private ResponseEntity<Object> serviceUnavailable() {
+        return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // Пользователь изменён параллельным запросом (проверка @Version)
+    @ExceptionHandler({OptimisticLockingFailureException.class})
+    private ResponseEntity<Object> conflict() {
+        return new ResponseEntity<>(HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler({ResponseStatusException.class})
     private ResponseEntity<Object> requestWithStatus(ResponseStatusException ex) {
         return new ResponseEntity<>(ex.getStatus());
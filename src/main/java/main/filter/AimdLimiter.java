@@ -0,0 +1,86 @@
+package main.filter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничение числа одновременно выполняемых запросов с адаптивным пределом (AIMD):
+ * - запрос, выполнившийся быстрее latencyThreshold, пока занято не меньше половины предела, увеличивает предел на 1;
+ * - медленный или сброшенный (ошибка, таймаут, 503 ниже по цепочке) запрос уменьшает предел в backoffRatio раз,
+ *   но не чаще одного раза за окно: запросы, допущенные до последнего уменьшения, предел больше не уменьшают,
+ *   поэтому одна пауза GC или медленный запрос при многих выполняемых запросах снижают предел один раз, а не до минимума.
+ * Предел держится в границах [minLimit, maxLimit]; запрос сверх предела сразу отклоняется.
+ */
+public class AimdLimiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final LongSupplier nanoClock;
+
+    private double limit;
+    private int inFlight;
+    // Число уменьшений предела: разрешение, выданное до последнего уменьшения, предел не уменьшает
+    private long decreases;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdNanos, double backoffRatio) {
+        this(initialLimit, minLimit, maxLimit, latencyThresholdNanos, backoffRatio, System::nanoTime);
+    }
+
+    AimdLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdNanos, double backoffRatio,
+                LongSupplier nanoClock) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    // Разрешение на выполнение запроса или null, если предел занят
+    public synchronized Permit tryAcquire() {
+        if (inFlight >= (int) limit)
+            return null;
+        inFlight++;
+        return new Permit(inFlight, decreases, nanoClock.getAsLong());
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private synchronized void release(Permit permit, long latencyNanos, boolean dropped) {
+        inFlight--;
+        if (dropped || latencyNanos > latencyThresholdNanos) {
+            if (permit.decreasesAtStart == decreases) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                decreases++;
+            }
+        } else if (permit.inFlightAtStart * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    // Освобождается один раз: повторные вызовы (например, complete и error AsyncListener) игнорируются
+    public class Permit {
+        private final int inFlightAtStart;
+        private final long decreasesAtStart;
+        private final long startedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart, long decreasesAtStart, long startedAt) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.decreasesAtStart = decreasesAtStart;
+            this.startedAt = startedAt;
+        }
+
+        public void release(boolean dropped) {
+            if (released.compareAndSet(false, true))
+                AimdLimiter.this.release(this, nanoClock.getAsLong() - startedAt, dropped);
+        }
+    }
+}
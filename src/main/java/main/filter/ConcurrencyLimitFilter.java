@@ -0,0 +1,121 @@
+package main.filter;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Допуск запросов к UserController: у каждого обработчика свой AimdLimiter (list - страницы списка и поиска,
+ * get - пользователь и статистика, create - создание и импорт, update, delete, verify - проверка пароля),
+ * поэтому поток изменений не вытесняет дешёвые чтения, а медленные страницы списка не снижают предел
+ * выборки одного пользователя. Запрос сверх предела сразу получает 503 с Retry-After, не занимая поток Tomcat
+ * ожиданием соединения из пула.
+ * Асинхронные запросы (CompletableFuture) освобождают разрешение по завершении через AsyncListener.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    public static final List<String> ENDPOINTS = List.of("list", "get", "create", "update", "delete", "verify");
+    private static final Set<String> LIST_PATHS = Set.of("/user/", "/user/search");
+
+    // Обработчик (элемент ENDPOINTS) -> его предел
+    private final Map<String, AimdLimiter> limiters;
+    private final long retryAfterSeconds;
+    // Вызывается с обработчиком отклонённого запроса
+    private final Consumer<String> onRejected;
+
+    public ConcurrencyLimitFilter(Map<String, AimdLimiter> limiters, long retryAfterSeconds, Consumer<String> onRejected) {
+        this.limiters = limiters;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.onRejected = onRejected;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String endpoint = endpoint(request);
+        AimdLimiter limiter = endpoint == null ? null : limiters.get(endpoint);
+        if (limiter == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        AimdLimiter.Permit permit = limiter.tryAcquire();
+        if (permit == null) {
+            onRejected.accept(endpoint);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted())
+                request.getAsyncContext().addListener(new PermitReleasingListener(permit, response));
+            else
+                permit.release(failed || isOverloaded(response));
+        }
+    }
+
+    // Обработчик UserController по методу и адресу запроса, null - запрос не ограничивается (например, OPTIONS)
+    private static String endpoint(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+        if (HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method))
+            return LIST_PATHS.contains(path) ? "list" : "get";
+        if (HttpMethod.POST.matches(method))
+            return path.endsWith("/verify") ? "verify" : "create";
+        if (HttpMethod.PUT.matches(method))
+            return "update";
+        if (HttpMethod.DELETE.matches(method))
+            return "delete";
+        return null;
+    }
+
+    // 503 ниже по цепочке (например, переполнен пул хеширования паролей) - признак перегрузки
+    private static boolean isOverloaded(HttpServletResponse response) {
+        return response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value();
+    }
+
+    private static class PermitReleasingListener implements AsyncListener {
+        private final AimdLimiter.Permit permit;
+        private final HttpServletResponse response;
+
+        private PermitReleasingListener(AimdLimiter.Permit permit, HttpServletResponse response) {
+            this.permit = permit;
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.release(isOverloaded(response));
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.release(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.release(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package main.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import main.datasource.ReadRouting;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Чтение собственных изменений при чтении с реплики: клиент (заголовок X-Client-Id, без него - адрес клиента),
+ * отправивший изменяющий запрос, в течение window после его начала и после его завершения читает с основной БД.
+ * Остальным GET-запросам разрешается чтение с реплики (ReadRouting) на время обработки в потоке запроса.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    // Клиенты с недавними изменениями; запись удаляется через window после последнего изменения
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(Duration window, long maximumClients) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(maximumClients)
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = clientOf(request);
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        if (!read) {
+            recentWriters.put(client, Boolean.TRUE);
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                // Окно отсчитывается заново от завершения изменения (для асинхронных запросов - по AsyncListener)
+                if (request.isAsyncStarted())
+                    request.getAsyncContext().addListener(new WriteCompletedListener(client));
+                else
+                    recentWriters.put(client, Boolean.TRUE);
+            }
+            return;
+        }
+
+        if (recentWriters.getIfPresent(client) != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReadRouting.allowReplica();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadRouting.reset();
+        }
+    }
+
+    private static String clientOf(HttpServletRequest request) {
+        String clientId = request.getHeader(CLIENT_ID_HEADER);
+        return clientId != null ? clientId : request.getRemoteAddr();
+    }
+
+    private class WriteCompletedListener implements AsyncListener {
+        private final String client;
+
+        private WriteCompletedListener(String client) {
+            this.client = client;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            recentWriters.put(client, Boolean.TRUE);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            recentWriters.put(client, Boolean.TRUE);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            recentWriters.put(client, Boolean.TRUE);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
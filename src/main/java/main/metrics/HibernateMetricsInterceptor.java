@@ -0,0 +1,37 @@
+package main.metrics;
+
+import io.micrometer.core.instrument.Metrics;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+/**
+ * Счётчики Hibernate по операциям UserService: SQL-запросы (user.hibernate.statements),
+ * загрузки сущностей (user.hibernate.entity.loads) и flush (user.hibernate.flushes) с тегом operation.
+ * Создаётся Hibernate на каждую сессию (hibernate.session_factory.session_scoped_interceptor),
+ * поэтому счётчики пишутся в глобальный реестр Micrometer, куда Spring Boot добавляет свой реестр.
+ */
+public class HibernateMetricsInterceptor extends EmptyInterceptor {
+    @Override
+    public String onPrepareStatement(String sql) {
+        increment("user.hibernate.statements");
+        return sql;
+    }
+
+    @Override
+    public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        increment("user.hibernate.entity.loads");
+        return false;
+    }
+
+    @Override
+    public void postFlush(Iterator entities) {
+        increment("user.hibernate.flushes");
+    }
+
+    private static void increment(String name) {
+        Metrics.counter(name, "operation", OperationContext.get()).increment();
+    }
+}
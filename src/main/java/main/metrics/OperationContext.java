@@ -0,0 +1,45 @@
+package main.metrics;
+
+// Имя текущей операции UserService (createUser, getUser, ...) для метрик Hibernate.
+// Переносится в потоки applicationTaskExecutor и PasswordHasher через wrap
+public final class OperationContext {
+    public static final String UNKNOWN = "other";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private OperationContext() {
+    }
+
+    public static String get() {
+        String operation = CURRENT.get();
+        return operation == null ? UNKNOWN : operation;
+    }
+
+    static String set(String operation) {
+        String previous = CURRENT.get();
+        CURRENT.set(operation);
+        return previous;
+    }
+
+    static void restore(String previous) {
+        if (previous == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(previous);
+    }
+
+    // Задача выполняется с операцией потока, который её поставил в очередь
+    public static Runnable wrap(Runnable task) {
+        String operation = CURRENT.get();
+        if (operation == null)
+            return task;
+        return () -> {
+            String previous = set(operation);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,31 @@
+package main.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Счётчики ошибок запросов: некорректные поля (по имени поля) и занятые логины
+@Component
+public class UserMetrics {
+    private final MeterRegistry registry;
+    private final Counter loginConflicts;
+
+    public UserMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.loginConflicts = Counter.builder("user.login.conflicts")
+                .description("Requests rejected because the login already exists")
+                .register(registry);
+    }
+
+    // errors - результат UserRequestValidator.validate
+    public void validationFailed(Map<String, String> errors) {
+        for (String field : errors.keySet())
+            registry.counter("user.validation.failures", "field", field).increment();
+    }
+
+    public void loginConflict() {
+        loginConflicts.increment();
+    }
+}
@@ -0,0 +1,78 @@
+package main.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Время выполнения методов UserService (user.service), UserRequestValidator (user.validation)
+ * и UserRepository (user.repository) с тегом method. Для асинхронных методов время считается
+ * до завершения CompletableFuture/Mono. Гистограммы и перцентили задаются в application.yml
+ * (management.metrics.distribution.*.user).
+ */
+@Aspect
+@Component
+public class UserMetricsAspect {
+    private final MeterRegistry registry;
+
+    public UserMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    // Имя метода сервиса становится операцией для метрик Hibernate (HibernateMetricsInterceptor)
+    @Around("execution(* main.service.UserService.*(..)) || execution(* main.service.ReactiveUserService.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        String previous = OperationContext.set(joinPoint.getSignature().getName());
+        try {
+            return time("user.service", joinPoint);
+        } finally {
+            OperationContext.restore(previous);
+        }
+    }
+
+    @Around("execution(* main.service.UserRequestValidator.validate(..))")
+    public Object timeValidation(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("user.validation", joinPoint);
+    }
+
+    @Around("execution(* main.repository.UserRepository+.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("user.repository", joinPoint);
+    }
+
+    private Object time(String name, ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        Timer.Sample sample = Timer.start(registry);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            stop(sample, name, method, e);
+            throw e;
+        }
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, e) -> stop(sample, name, method, e));
+            return result;
+        }
+        if (result instanceof Mono)
+            return ((Mono<?>) result)
+                    .doOnSuccess(value -> stop(sample, name, method, null))
+                    .doOnError(e -> stop(sample, name, method, e));
+        stop(sample, name, method, null);
+        return result;
+    }
+
+    private void stop(Timer.Sample sample, String name, String method, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null)
+            error = error.getCause();
+        sample.stop(registry.timer(name, "method", method,
+                "exception", error == null ? "none" : error.getClass().getSimpleName()));
+    }
+}
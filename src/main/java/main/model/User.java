@@ -4,7 +4,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
-import java.util.List;
+import java.util.Set;
 
 @Data
 @NoArgsConstructor
@@ -12,7 +12,11 @@ import java.util.List;
 @Table(name = "users")
 public class User {
     @Id
-    @Column(name = "login")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "login", nullable = false, unique = true)
     private String login;
 
     @Column(name = "name", nullable = false)
@@ -21,15 +25,23 @@ public class User {
     @Column(name = "password", nullable = false)
     private String password;
 
+    // Версия строки: увеличивается при каждом изменении пользователя (и его ролей), входит в ETag
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    // Set вместо List (bag): при изменении ролей Hibernate пишет в user2role только добавленные
+    // и удалённые связи, а не удаляет и вставляет заново все строки пользователя
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "user2role",
             joinColumns = {@JoinColumn(name = "user_id")},
             inverseJoinColumns = {@JoinColumn(name = "role_id")}
     )
-    List<Role> roles;
+    @OrderBy("id")
+    Set<Role> roles;
 
-    public User(String login, String name, String password, List<Role> roles) {
+    public User(String login, String name, String password, Set<Role> roles) {
         this.login = login;
         this.name = name;
         this.password = password;
@@ -0,0 +1,51 @@
+package main.model.embedded;
+
+import main.model.enums.RoleType;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Пользователь во встроенном хранилище (профиль embedded): неизменяемый снимок строки users вместе с ролями.
+// Каждое изменение заменяет объект целиком, поэтому читатели не видят частично изменённых данных
+public final class StoredUser {
+    private final long id;
+    private final String login;
+    private final String name;
+    private final String password;
+    private final long version;
+    private final Set<RoleType> roles;
+
+    public StoredUser(long id, String login, String name, String password, long version, Set<RoleType> roles) {
+        this.id = id;
+        this.login = login;
+        this.name = name;
+        this.password = password;
+        this.version = version;
+        this.roles = Collections.unmodifiableSet(roles.isEmpty() ? EnumSet.noneOf(RoleType.class) : EnumSet.copyOf(roles));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Set<RoleType> getRoles() {
+        return roles;
+    }
+}
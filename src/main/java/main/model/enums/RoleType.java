@@ -1,7 +1,22 @@
 package main.model.enums;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public enum RoleType {
     USER,
     MODERATOR,
     OPERATOR;
+
+    private static final Map<String, RoleType> BY_NAME = new HashMap<>();
+
+    static {
+        for (RoleType roleType : values())
+            BY_NAME.put(roleType.name(), roleType);
+    }
+
+    // Аналог valueOf без исключений: null, если роли с таким именем нет
+    public static RoleType fromName(String name) {
+        return name == null ? null : BY_NAME.get(name);
+    }
 }
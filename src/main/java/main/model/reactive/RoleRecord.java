@@ -0,0 +1,21 @@
+package main.model.reactive;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import main.model.enums.RoleType;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+// Строка таблицы roles для реактивного варианта (R2DBC)
+@Data
+@NoArgsConstructor
+@Table("roles")
+public class RoleRecord {
+    @Id
+    @Column("id")
+    private Integer id;
+
+    @Column("name")
+    private RoleType name;
+}
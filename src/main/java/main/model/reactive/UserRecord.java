@@ -0,0 +1,36 @@
+package main.model.reactive;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+// Строка таблицы users для реактивного варианта (R2DBC); роли читаются отдельно через user2role
+@Data
+@NoArgsConstructor
+@Table("users")
+public class UserRecord {
+    @Id
+    @Column("id")
+    private Long id;
+
+    @Column("login")
+    private String login;
+
+    @Column("name")
+    private String name;
+
+    @Column("password")
+    private String password;
+
+    // Версия строки (ETag пользователя); при изменении увеличивается запросом UserReactiveRepository.updateIfVersion
+    @Column("version")
+    private Long version = 0L;
+
+    public UserRecord(String login, String name, String password) {
+        this.login = login;
+        this.name = name;
+        this.password = password;
+    }
+}
@@ -0,0 +1,19 @@
+package main.model.reactive;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+// Связь пользователя с ролью (таблица user2role). Составной ключ R2DBC-репозитории не поддерживают,
+// поэтому связи читаются и пишутся только запросами UserRoleReactiveRepository
+@Data
+@NoArgsConstructor
+@Table("user2role")
+public class UserRoleRecord {
+    @Column("user_id")
+    private Long userId;
+
+    @Column("role_id")
+    private Integer roleId;
+}
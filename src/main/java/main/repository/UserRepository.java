@@ -1,10 +1,63 @@
 package main.repository;
 
 import main.model.User;
+import main.repository.projection.UserCount;
+import main.repository.projection.UserRoleSummary;
+import main.repository.projection.UserSummary;
+import main.repository.projection.UserVersion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, String> {
-    Optional<User> deleteByLogin(String login);
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
+    Optional<User> findByLogin(String login);
+
+    boolean existsByLogin(String login);
+
+    // Число удалённых пользователей (0 или 1)
+    long deleteByLogin(String login);
+
+    @Query("SELECT u.password FROM User u WHERE u.login = :login")
+    Optional<String> findPasswordByLogin(@Param("login") String login);
+
+    // id и версия пользователя для ETag без загрузки сущности
+    @Query("SELECT u.id AS id, u.version AS version FROM User u WHERE u.login = :login")
+    Optional<UserVersion> findVersionByLogin(@Param("login") String login);
+
+    // Keyset-пагинация по уникальному ключу login: страница пользователей с login > after
+    @Query("SELECT u.login AS login, u.name AS name FROM User u WHERE u.login > :after ORDER BY u.login")
+    List<UserSummary> findPageAfter(@Param("after") String after, Pageable pageable);
+
+    // login и name пользователей из набора логинов (сверка UserSearchIndex)
+    @Query("SELECT u.login AS login, u.name AS name FROM User u WHERE u.login IN :logins")
+    List<UserSummary> findSummariesByLoginIn(@Param("logins") Collection<String> logins);
+
+    // Все связи пользователей с ролями одним запросом (загрузка RoleMembershipIndex)
+    @Query("SELECT u.login AS login, u.name AS name, r.name AS role FROM User u JOIN u.roles r")
+    List<UserRoleSummary> findAllRoleMemberships();
+
+    // Число всех пользователей и пользователей каждой роли одним запросом (загрузка и сверка UserCounters)
+    @Query(value = "SELECT NULL AS role, COUNT(*) AS total FROM users " +
+            "UNION ALL SELECT r.name, COUNT(*) FROM user2role ur JOIN roles r ON r.id = ur.role_id GROUP BY r.name",
+            nativeQuery = true)
+    List<UserCount> countUsers();
+
+    // Пользователь вместе с ролями одним запросом (без отдельной ленивой загрузки roles)
+    @EntityGraph(attributePaths = "roles")
+    @Query("SELECT u FROM User u WHERE u.login = :login")
+    Optional<User> findWithRolesByLogin(@Param("login") String login);
+
+    // Пользователи с ролями для набора логинов одним запросом
+    @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.login IN :logins")
+    List<User> findAllWithRolesByLoginIn(@Param("logins") Collection<String> logins);
+
+    // Какие из переданных логинов уже заняты
+    @Query("SELECT u.login FROM User u WHERE u.login IN :logins")
+    List<String> findExistingLogins(@Param("logins") Collection<String> logins);
 }
@@ -0,0 +1,24 @@
+package main.repository;
+
+import main.model.User;
+
+import java.util.List;
+
+// Операции UserRepository, реализованные напрямую через EntityManager и JDBC (UserRepositoryImpl)
+public interface UserRepositoryCustom {
+    // Вставка нового пользователя одним insert (persist + flush в собственной транзакции).
+    // Если логин занят, бросает DataIntegrityViolationException
+    long insert(User user);
+
+    // Обе вставки увеличивают счётчик изменений таблицы users и возвращают его новое значение (пустой список - 0).
+    // Вставка новых пользователей JDBC-пачками по user.import.batch-size: пачка insert в users,
+    // один select сгенерированных id, пачка insert в user2role
+    long insertAll(List<User> users);
+
+    // Счётчик изменений таблицы users (table_versions): ETag списка пользователей
+    long getTableVersion();
+
+    // Увеличить счётчик изменений таблицы users в текущей транзакции, возвращает новое значение
+    // (строка table_versions заблокирована обновлением до коммита, поэтому значение принадлежит этой транзакции)
+    long incrementTableVersion();
+}
@@ -0,0 +1,80 @@
+package main.repository;
+
+import main.model.Role;
+import main.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Value("${user.import.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    @Transactional
+    public long insert(User user) {
+        entityManager.persist(user);
+        entityManager.flush();
+        return incrementTableVersion();
+    }
+
+    // Hibernate не группирует вставки сущностей с IDENTITY-ключом, поэтому массовая вставка идёт через JDBC
+    @Override
+    @Transactional
+    public long insertAll(List<User> users) {
+        for (int from = 0; from < users.size(); from += batchSize) {
+            List<User> batch = users.subList(from, Math.min(from + batchSize, users.size()));
+            jdbcTemplate.batchUpdate("INSERT INTO users (login, name, password) VALUES (?, ?, ?)",
+                    batch, batch.size(), (statement, user) -> {
+                        statement.setString(1, user.getLogin());
+                        statement.setString(2, user.getName());
+                        statement.setString(3, user.getPassword());
+                    });
+
+            Map<String, Long> ids = new HashMap<>();
+            namedParameterJdbcTemplate.query("SELECT id, login FROM users WHERE login IN (:logins)",
+                    Map.of("logins", batch.stream().map(User::getLogin).collect(Collectors.toList())),
+                    resultSet -> {
+                        ids.put(resultSet.getString("login"), resultSet.getLong("id"));
+                    });
+
+            List<Object[]> links = new ArrayList<>();
+            for (User user : batch) {
+                user.setId(ids.get(user.getLogin()));
+                for (Role role : user.getRoles())
+                    links.add(new Object[]{user.getId(), role.getId()});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO user2role (user_id, role_id) VALUES (?, ?)", links);
+        }
+        return users.isEmpty() ? 0 : incrementTableVersion();
+    }
+
+    @Override
+    public long getTableVersion() {
+        return jdbcTemplate.queryForObject("SELECT version FROM table_versions WHERE name = 'users'", Long.class);
+    }
+
+    @Override
+    @Transactional
+    public long incrementTableVersion() {
+        jdbcTemplate.update("UPDATE table_versions SET version = version + 1 WHERE name = 'users'");
+        return getTableVersion();
+    }
+}
@@ -0,0 +1,461 @@
+package main.repository.embedded;
+
+import main.model.embedded.StoredUser;
+import main.model.enums.RoleType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Встроенное хранилище пользователей (профиль embedded) вместо JPA и MySQL: те же операции, что использует
+ * UserServiceImpl у UserRepository, с теми же исключениями (занятый логин - DataIntegrityViolationException,
+ * устаревшая версия - OptimisticLockingFailureException).
+ * - Пользователи с ролями хранятся в памяти в ConcurrentSkipListMap по login неизменяемыми StoredUser:
+ *   чтение - поиск в карте без блокировок.
+ * - Изменения выполняются по одному: сначала запись в журнал users-<поколение>.log (UserLog, отображённый
+ *   в память файл), затем замена в карте.
+ * - Периодически состояние сжимается в снимок users.snapshot, и журнал начинается заново со следующего поколения.
+ * - При старте загружается снимок и проигрываются журналы начиная с его поколения.
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedUserStore {
+    private static final int SNAPSHOT_MAGIC = 0x55534552;
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final String SNAPSHOT_FILE = "users.snapshot";
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+    private final Path directory;
+    private final int logRegionSize;
+    private final boolean forceOnWrite;
+    private final Duration snapshotInterval;
+    private final long snapshotLogSize;
+
+    private final ConcurrentSkipListMap<String, StoredUser> users = new ConcurrentSkipListMap<>();
+    // Число пользователей, всего и по ролям: меняется вместе с users
+    private final AtomicInteger userCount = new AtomicInteger();
+    private final Map<RoleType, AtomicInteger> roleCounts = new EnumMap<>(RoleType.class);
+    private volatile long tableVersion;
+    // Снимки выполняются по одному от копии состояния до удаления старых журналов: иначе два снимка пишут
+    // один временный файл, и переименование более старого может оказаться последним.
+    // Берётся до блокировки this, не наоборот
+    private final Object snapshotLock = new Object();
+    // Поля ниже меняются только под блокировкой this
+    private long nextId = 1;
+    private long generation;
+    private UserLog log;
+    private boolean changedSinceSnapshot;
+    private ScheduledExecutorService snapshotScheduler;
+
+    public EmbeddedUserStore(@Value("${user.embedded.directory:data}") String directory,
+                             @Value("${user.embedded.log-region-size:16MB}") DataSize logRegionSize,
+                             @Value("${user.embedded.force-on-write:false}") boolean forceOnWrite,
+                             @Value("${user.embedded.snapshot-interval:5m}") Duration snapshotInterval,
+                             @Value("${user.embedded.snapshot-log-size:64MB}") DataSize snapshotLogSize) {
+        this.directory = Paths.get(directory);
+        this.logRegionSize = (int) logRegionSize.toBytes();
+        this.forceOnWrite = forceOnWrite;
+        this.snapshotInterval = snapshotInterval;
+        this.snapshotLogSize = snapshotLogSize.toBytes();
+        for (RoleType role : RoleType.values())
+            roleCounts.put(role, new AtomicInteger());
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot))
+            readSnapshot(snapshot);
+        // Журналы поколений после снимка: следующий появляется, только когда предыдущий закрыт
+        while (Files.exists(logFile(generation + 1)))
+            replay(logFile(generation++));
+        log = UserLog.open(logFile(generation), logRegionSize, this::apply);
+
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "embedded-user-store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = snapshotInterval.toMillis();
+        snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Последний снимок - после завершения запущенного планировщиком
+    @PreDestroy
+    public void close() throws IOException {
+        snapshotScheduler.shutdown();
+        try {
+            snapshotScheduler.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+        closeLog();
+    }
+
+    // Закрыть журнал без снимка: при следующем открытии состояние восстанавливается проигрыванием журнала
+    synchronized void closeLog() throws IOException {
+        snapshotScheduler.shutdown();
+        log.close();
+    }
+
+    public Optional<StoredUser> findByLogin(String login) {
+        return Optional.ofNullable(users.get(login));
+    }
+
+    public boolean existsByLogin(String login) {
+        return users.containsKey(login);
+    }
+
+    // Keyset-пагинация по login: пользователи с login > after (after == null - с начала), подходящие под filter
+    public List<StoredUser> findPageAfter(String after, int limit, Predicate<StoredUser> filter) {
+        NavigableMap<String, StoredUser> tail = after == null ? users : users.tailMap(after, false);
+        List<StoredUser> page = new ArrayList<>();
+        for (StoredUser user : tail.values()) {
+            if (page.size() == limit)
+                break;
+            if (filter.test(user))
+                page.add(user);
+        }
+        return page;
+    }
+
+    // Какие из переданных логинов уже заняты
+    public List<String> findExistingLogins(Collection<String> logins) {
+        List<String> existing = new ArrayList<>();
+        for (String login : logins) {
+            if (users.containsKey(login))
+                existing.add(login);
+        }
+        return existing;
+    }
+
+    // Счётчик изменений (ETag списка пользователей): увеличивается каждым изменением
+    public long getTableVersion() {
+        return tableVersion;
+    }
+
+    public synchronized StoredUser insert(String login, String name, String password, Set<RoleType> roles) {
+        if (users.containsKey(login))
+            throw new DataIntegrityViolationException("login already exists: " + login);
+        StoredUser user = new StoredUser(nextId, login, name, password, 0, roles);
+        write(encodePut(null, user));
+        return user;
+    }
+
+    // Пользователи вставляются одной пачкой записей журнала; занятые логины пропускаются (null на их месте)
+    public synchronized List<StoredUser> insertAll(List<StoredUser> newUsers) {
+        List<StoredUser> inserted = new ArrayList<>(newUsers.size());
+        for (StoredUser newUser : newUsers) {
+            if (users.containsKey(newUser.getLogin())) {
+                inserted.add(null);
+                continue;
+            }
+            StoredUser user = new StoredUser(nextId, newUser.getLogin(), newUser.getName(), newUser.getPassword(), 0,
+                    newUser.getRoles());
+            byte[] record = encodePut(null, user);
+            append(record);
+            apply(record);
+            inserted.add(user);
+        }
+        flush();
+        return inserted;
+    }
+
+    // Изменение пользователя login: пусто, если его нет; expectedVersion != null - только если версия не изменилась
+    public synchronized Optional<StoredUser> update(String login, Long expectedVersion, String newLogin, String name,
+                                                    String password, Set<RoleType> roles) {
+        StoredUser current = users.get(login);
+        if (current == null)
+            return Optional.empty();
+        if (expectedVersion != null && current.getVersion() != expectedVersion)
+            throw new OptimisticLockingFailureException("user " + login + " was changed concurrently");
+        if (!login.equals(newLogin) && users.containsKey(newLogin))
+            throw new DataIntegrityViolationException("login already exists: " + newLogin);
+        if (current.getLogin().equals(newLogin) && current.getName().equals(name)
+                && current.getPassword().equals(password) && current.getRoles().equals(roles))
+            return Optional.of(current);
+
+        StoredUser user = new StoredUser(current.getId(), newLogin, name, password, current.getVersion() + 1, roles);
+        write(encodePut(login, user));
+        return Optional.of(user);
+    }
+
+    public synchronized Optional<StoredUser> deleteByLogin(String login) {
+        StoredUser user = users.get(login);
+        if (user != null)
+            write(encodeDelete(login));
+        return Optional.ofNullable(user);
+    }
+
+    // Сжать состояние в снимок и начать журнал следующего поколения; старые журналы удаляются после записи снимка
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            List<StoredUser> state;
+            long version;
+            long snapshotNextId;
+            long snapshotGeneration;
+            synchronized (this) {
+                if (!changedSinceSnapshot)
+                    return;
+                state = new ArrayList<>(users.values());
+                version = tableVersion;
+                snapshotNextId = nextId;
+                snapshotGeneration = generation + 1;
+                // Изменения после копии состояния идут уже в журнал нового поколения
+                UserLog previous = log;
+                log = UserLog.open(logFile(snapshotGeneration), logRegionSize, data -> {
+                });
+                generation = snapshotGeneration;
+                changedSinceSnapshot = false;
+                previous.close();
+            }
+
+            writeSnapshot(state, version, snapshotNextId, snapshotGeneration);
+            try (DirectoryStream<Path> logs = Files.newDirectoryStream(directory, "users-*.log")) {
+                for (Path file : logs) {
+                    if (generationOf(file) < snapshotGeneration)
+                        Files.delete(file);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return userCount.get();
+    }
+
+    // Число пользователей роли
+    public int countByRole(RoleType role) {
+        return roleCounts.get(role).get();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            // Снимок будет повторён в следующий раз: журналы удаляются только после записи снимка,
+            // поэтому их достаточно для восстановления
+            synchronized (this) {
+                changedSinceSnapshot = true;
+            }
+        }
+    }
+
+    // Запись в журнал, затем изменение в памяти (вызывается под блокировкой)
+    private void write(byte[] record) {
+        append(record);
+        flush();
+        apply(record);
+    }
+
+    private void append(byte[] record) {
+        try {
+            log.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        changedSinceSnapshot = true;
+    }
+
+    private void flush() {
+        if (forceOnWrite)
+            log.force();
+        if (log.size() >= snapshotLogSize && !snapshotScheduler.isShutdown())
+            snapshotScheduler.execute(this::snapshotQuietly);
+    }
+
+    // Применить запись журнала к состоянию в памяти (при изменении и при восстановлении)
+    private void apply(byte[] record) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            byte type = in.readByte();
+            if (type == PUT) {
+                String previousLogin = in.readBoolean() ? in.readUTF() : null;
+                StoredUser user = readUser(in);
+                StoredUser previous = previousLogin != null && !previousLogin.equals(user.getLogin())
+                        ? users.remove(previousLogin) : null;
+                StoredUser replaced = users.put(user.getLogin(), user);
+                count(previous != null ? previous : replaced, -1);
+                count(user, 1);
+                nextId = Math.max(nextId, user.getId() + 1);
+            } else if (type == DELETE) {
+                count(users.remove(in.readUTF()), -1);
+            } else {
+                throw new IllegalStateException("Unknown log record type " + type);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        tableVersion++;
+    }
+
+    private void count(StoredUser user, int delta) {
+        if (user == null)
+            return;
+        userCount.addAndGet(delta);
+        for (RoleType role : user.getRoles())
+            roleCounts.get(role).addAndGet(delta);
+    }
+
+    private void replay(Path file) throws IOException {
+        UserLog.open(file, logRegionSize, this::apply).close();
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve("users-" + logGeneration + ".log");
+    }
+
+    private static long generationOf(Path logFile) {
+        String name = logFile.getFileName().toString();
+        return Long.parseLong(name.substring("users-".length(), name.length() - ".log".length()));
+    }
+
+    private static byte[] encodePut(String previousLogin, StoredUser user) {
+        return encode(out -> {
+            out.writeByte(PUT);
+            out.writeBoolean(previousLogin != null);
+            if (previousLogin != null)
+                out.writeUTF(previousLogin);
+            writeUser(out, user);
+        });
+    }
+
+    private static byte[] encodeDelete(String login) {
+        return encode(out -> {
+            out.writeByte(DELETE);
+            out.writeUTF(login);
+        });
+    }
+
+    private static byte[] encode(RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeUser(DataOutput out, StoredUser user) throws IOException {
+        out.writeLong(user.getId());
+        out.writeUTF(user.getLogin());
+        out.writeUTF(user.getName());
+        out.writeUTF(user.getPassword());
+        out.writeLong(user.getVersion());
+        out.writeByte(user.getRoles().size());
+        for (RoleType role : user.getRoles())
+            out.writeUTF(role.name());
+    }
+
+    private static StoredUser readUser(DataInput in) throws IOException {
+        long id = in.readLong();
+        String login = in.readUTF();
+        String name = in.readUTF();
+        String password = in.readUTF();
+        long version = in.readLong();
+        Set<RoleType> roles = EnumSet.noneOf(RoleType.class);
+        for (int i = in.readByte(); i > 0; i--)
+            roles.add(RoleType.valueOf(in.readUTF()));
+        return new StoredUser(id, login, name, password, version, roles);
+    }
+
+    // Снимок: заголовок, пользователи, CRC32 всего предшествующего содержимого.
+    // Пишется во временный файл и атомарно заменяет прежний после fsync
+    private void writeSnapshot(List<StoredUser> state, long version, long snapshotNextId, long snapshotGeneration)
+            throws IOException {
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            OutputStream file = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_FORMAT);
+            out.writeLong(snapshotGeneration);
+            out.writeLong(version);
+            out.writeLong(snapshotNextId);
+            out.writeInt(state.size());
+            for (StoredUser user : state)
+                writeUser(out, user);
+            out.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void readSnapshot(Path snapshot) throws IOException {
+        CRC32 crc = new CRC32();
+        // CRC считается поверх буфера: иначе в неё попадёт прочитанный наперёд контрольный хвост
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16), crc))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_FORMAT)
+                throw new IllegalStateException("Unsupported snapshot format: " + snapshot);
+            generation = in.readLong();
+            tableVersion = in.readLong();
+            nextId = in.readLong();
+            for (int i = in.readInt(); i > 0; i--) {
+                StoredUser user = readUser(in);
+                users.put(user.getLogin(), user);
+                count(user, 1);
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected)
+                throw new IllegalStateException("Corrupted snapshot: " + snapshot);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutput out) throws IOException;
+    }
+}
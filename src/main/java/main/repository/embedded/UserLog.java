@@ -0,0 +1,105 @@
+package main.repository.embedded;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений встроенного хранилища: файл только на дозапись, отображённый в память (MappedByteBuffer)
+ * участками по regionSize. Запись журнала: длина данных (int), CRC32 данных (int), данные.
+ * Конец журнала - нулевая длина (файл расширяется нулями при отображении участка) или запись
+ * с неверной контрольной суммой (оборванная при сбое); хвост после неё отбрасывается при открытии.
+ */
+final class UserLog implements Closeable {
+    private static final int HEADER_SIZE = 8;
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position;
+
+    private UserLog(FileChannel channel, int regionSize, long position) {
+        this.channel = channel;
+        this.regionSize = regionSize;
+        this.position = position;
+    }
+
+    // Открыть журнал (создать, если его нет), передать replay данные всех целых записей по порядку
+    // и подготовить дозапись после последней из них
+    static UserLog open(Path file, int regionSize, Consumer<byte[]> replay) throws IOException {
+        long position = 0;
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                CRC32 crc = new CRC32();
+                while (true) {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0)
+                        break;
+                    byte[] data = new byte[length];
+                    in.readFully(data);
+                    crc.reset();
+                    crc.update(data);
+                    if ((int) crc.getValue() != checksum)
+                        break;
+                    replay.accept(data);
+                    position += HEADER_SIZE + length;
+                }
+            } catch (EOFException e) {
+                // Файл закончился посреди записи: запись не была дописана до сбоя
+            }
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Отбросить нули и оборванный хвост, чтобы после новых записей не оказались старые
+        channel.truncate(position);
+        return new UserLog(channel, regionSize, position);
+    }
+
+    void append(byte[] data) throws IOException {
+        int size = HEADER_SIZE + data.length;
+        if (region == null || position + size > regionStart + region.capacity())
+            mapRegion(size);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        int offset = (int) (position - regionStart);
+        region.putInt(offset + 4, (int) crc.getValue());
+        region.position(offset + HEADER_SIZE);
+        region.put(data);
+        // Длина пишется последней: до неё запись выглядит как конец журнала
+        region.putInt(offset, data.length);
+        position += size;
+    }
+
+    // Сбросить записанное на диск
+    void force() {
+        if (region != null)
+            region.force();
+    }
+
+    long size() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void mapRegion(int minSize) throws IOException {
+        force();
+        regionStart = position;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(regionSize, minSize));
+    }
+}
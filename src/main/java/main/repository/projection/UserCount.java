@@ -0,0 +1,8 @@
+package main.repository.projection;
+
+// Строка агрегата UserRepository.countUsers: число пользователей роли role или всех пользователей (role == null)
+public interface UserCount {
+    String getRole();
+
+    long getTotal();
+}
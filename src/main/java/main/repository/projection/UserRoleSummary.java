@@ -0,0 +1,12 @@
+package main.repository.projection;
+
+import main.model.enums.RoleType;
+
+// Проекция связи пользователь - роль: login и name пользователя и имя роли, сущности не создаются
+public interface UserRoleSummary {
+    String getLogin();
+
+    String getName();
+
+    RoleType getRole();
+}
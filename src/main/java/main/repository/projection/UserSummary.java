@@ -0,0 +1,8 @@
+package main.repository.projection;
+
+// Проекция пользователя без ролей и пароля: выбираются только login и name, сущность User не создаётся
+public interface UserSummary {
+    String getLogin();
+
+    String getName();
+}
@@ -0,0 +1,8 @@
+package main.repository.projection;
+
+// Проекция для проверки ETag пользователя: только id и версия строки
+public interface UserVersion {
+    Long getId();
+
+    Long getVersion();
+}
@@ -0,0 +1,13 @@
+package main.repository.reactive;
+
+import main.model.reactive.RoleRecord;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+
+public interface RoleReactiveRepository extends ReactiveCrudRepository<RoleRecord, Integer> {
+    // Роли пользователя одним запросом через user2role
+    @Query("SELECT r.id, r.name FROM roles r JOIN user2role ur ON ur.role_id = r.id WHERE ur.user_id = :userId ORDER BY r.id")
+    Flux<RoleRecord> findByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,50 @@
+package main.repository.reactive;
+
+import main.model.reactive.UserRecord;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface UserReactiveRepository extends ReactiveCrudRepository<UserRecord, Long> {
+    @Query("SELECT * FROM users WHERE login = :login")
+    Mono<UserRecord> findByLogin(@Param("login") String login);
+
+    // Keyset-пагинация по уникальному ключу login: страница пользователей с login > after (без пароля)
+    @Query("SELECT id, login, name FROM users WHERE login > :after ORDER BY login LIMIT :limit")
+    Flux<UserRecord> findPageAfter(@Param("after") String after, @Param("limit") int limit);
+
+    // Страница пользователей роли: связи выбираются по индексу user2role (role_id, user_id)
+    @Query("SELECT u.id, u.login, u.name FROM user2role ur JOIN users u ON u.id = ur.user_id " +
+            "WHERE ur.role_id = :roleId AND u.login > :after ORDER BY u.login LIMIT :limit")
+    Flux<UserRecord> findPageByRoleAfter(@Param("roleId") int roleId, @Param("after") String after, @Param("limit") int limit);
+
+    // Страница поиска по login и name без учёта регистра: pattern - шаблон LIKE в нижнем регистре
+    @Query("SELECT id, login, name FROM users WHERE (LOWER(login) LIKE :pattern OR LOWER(name) LIKE :pattern) " +
+            "AND login > :after ORDER BY login LIMIT :limit")
+    Flux<UserRecord> searchPageAfter(@Param("pattern") String pattern, @Param("after") String after, @Param("limit") int limit);
+
+    // Какие из переданных логинов уже заняты (R2DBC-репозитории возвращают только сущности, поэтому без пароля и имени)
+    @Query("SELECT id, login FROM users WHERE login IN (:logins)")
+    Flux<UserRecord> findExistingLogins(@Param("logins") Collection<String> logins);
+
+    // Изменение пользователя с проверкой версии строки: 0 - строку уже изменил или удалил параллельный запрос
+    @Modifying
+    @Query("UPDATE users SET login = :login, name = :name, password = :password, version = version + 1 " +
+            "WHERE id = :id AND version = :version")
+    Mono<Integer> updateIfVersion(@Param("id") Long id, @Param("version") Long version, @Param("login") String login,
+                                  @Param("name") String name, @Param("password") String password);
+
+    // Счётчик изменений таблицы users (ETag списка пользователей)
+    @Modifying
+    @Query("UPDATE table_versions SET version = version + 1 WHERE name = 'users'")
+    Mono<Integer> incrementTableVersion();
+
+    @Modifying
+    @Query("DELETE FROM users WHERE login = :login")
+    Mono<Integer> deleteByLogin(@Param("login") String login);
+}
@@ -0,0 +1,31 @@
+package main.repository.reactive;
+
+import main.model.reactive.UserRoleRecord;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface UserRoleReactiveRepository extends Repository<UserRoleRecord, Long> {
+    @Query("SELECT user_id, role_id FROM user2role WHERE user_id = :userId")
+    Flux<UserRoleRecord> findByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT COUNT(*) FROM user2role WHERE role_id = :roleId")
+    Mono<Long> countByRoleId(@Param("roleId") Integer roleId);
+
+    @Modifying
+    @Query("INSERT INTO user2role (user_id, role_id) VALUES (:userId, :roleId)")
+    Mono<Integer> insert(@Param("userId") Long userId, @Param("roleId") Integer roleId);
+
+    @Modifying
+    @Query("DELETE FROM user2role WHERE user_id = :userId AND role_id IN (:roleIds)")
+    Mono<Integer> delete(@Param("userId") Long userId, @Param("roleIds") Collection<Integer> roleIds);
+
+    @Modifying
+    @Query("DELETE FROM user2role WHERE user_id IN (SELECT id FROM users WHERE login = :login)")
+    Mono<Integer> deleteByLogin(@Param("login") String login);
+}
@@ -0,0 +1,46 @@
+package main.service;
+
+// Сильные ETag ответов API: пользователь - по id и версии строки, список - по счётчику изменений таблицы users.
+// Разные представления одного ответа (JSON, CBOR, Smile, сжатый gzip снимок списка) имеют разные ETag
+public final class ETags {
+    private static final String[] FORMATS = {"cbor", "smile"};
+
+    private ETags() {
+    }
+
+    // id входит в ETag, чтобы пересозданный с тем же логином пользователь не совпал с удалённым
+    public static String forUser(Long id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    public static String forUserList(long tableVersion) {
+        return "\"users-" + tableVersion + "\"";
+    }
+
+    // Список пользователей роли - по версии RoleMembershipIndex; instance отличает версии разных запусков процесса
+    public static String forRoleList(String instance, long indexVersion) {
+        return "\"roles-" + instance + "-" + indexVersion + "\"";
+    }
+
+    // ETag представления: JSON - сам etag, иначе с суффиксом представления ("1-2" -> "1-2-cbor")
+    public static String forRepresentation(String etag, String representation) {
+        if (etag == null || representation == null)
+            return etag;
+        return etag.substring(0, etag.length() - 1) + "-" + representation + "\"";
+    }
+
+    // Сильное сравнение с заголовком If-Match: список ETag через запятую или "*"; слабые ETag не совпадают.
+    // If-Match проверяет состояние пользователя, поэтому подходит ETag любого формата ответа
+    public static boolean matches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag))
+                return true;
+            for (String format : FORMATS) {
+                if (candidate.equals(forRepresentation(etag, format)))
+                    return true;
+            }
+        }
+        return false;
+    }
+}
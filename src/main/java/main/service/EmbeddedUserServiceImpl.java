@@ -0,0 +1,301 @@
+package main.service;
+
+import main.api.request.UserDataRequest;
+import main.api.response.BooleanResponseDTO;
+import main.api.response.ResponseAPI;
+import main.api.response.UserDTO;
+import main.api.response.UserListResponse;
+import main.api.response.UserStatsResponse;
+import main.metrics.UserMetrics;
+import main.model.embedded.StoredUser;
+import main.model.enums.RoleType;
+import main.repository.embedded.EmbeddedUserStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+// Вариант UserService для профиля embedded: пользователи хранятся в EmbeddedUserStore, без БД и транзакций.
+// Ответы, ошибки и ETag те же, что у UserServiceImpl. Чтение пользователя - поиск в памяти, поэтому без UserCache.
+// Поиск и фильтр по роли проходят по упорядоченным пользователям хранилища вместо отдельных индексов
+@Service
+@Profile("embedded")
+public class EmbeddedUserServiceImpl implements UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Запрос поиска короче - префикс login или name, длиннее - подстрока (как в UserSearchIndex)
+    private static final int SUBSTRING_QUERY_LENGTH = 3;
+
+    private EmbeddedUserStore store;
+    private UserRequestValidator validator;
+    private PasswordHasher passwordHasher;
+    private UserMetrics metrics;
+    private ApplicationEventPublisher eventPublisher;
+    private Executor taskExecutor;
+
+    @Autowired
+    public EmbeddedUserServiceImpl(EmbeddedUserStore store,
+                                   UserRequestValidator validator,
+                                   PasswordHasher passwordHasher,
+                                   UserMetrics metrics,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Qualifier("applicationTaskExecutor") Executor taskExecutor) {
+        this.store = store;
+        this.validator = validator;
+        this.passwordHasher = passwordHasher;
+        this.metrics = metrics;
+        this.eventPublisher = eventPublisher;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<ResponseAPI>> createUser(UserDataRequest registerDto) {
+        Map<String, String> errors = validator.validate(registerDto);
+        metrics.validationFailed(errors);
+        if (errors.size() > 0)
+            return CompletableFuture.completedFuture(new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK));
+
+        Set<RoleType> roles = findRoles(registerDto.getRoles());
+        return passwordHasher.hash(registerDto.getPassword())
+                .thenApplyAsync(passwordHash -> {
+                    StoredUser user;
+                    try {
+                        user = store.insert(registerDto.getLogin(), registerDto.getName(), passwordHash, roles);
+                    } catch (DataIntegrityViolationException e) {
+                        return loginConflict(new LinkedHashMap<>());
+                    }
+                    eventPublisher.publishEvent(new UserChangedEvent(null, user.getLogin(), user.getName(), user.getRoles()));
+                    return new ResponseEntity<>(new BooleanResponseDTO(true), HttpStatus.OK);
+                }, taskExecutor);
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<ResponseAPI>> updateUser(String login, UserDataRequest editDto, String ifMatch) {
+        StoredUser current = store.findByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+        Map<String, String> errors = validator.validate(editDto, false);
+        metrics.validationFailed(errors);
+        if (!login.equals(editDto.getLogin()) && store.existsByLogin(editDto.getLogin()))
+            return CompletableFuture.completedFuture(loginConflict(errors));
+        if (errors.size() > 0)
+            return CompletableFuture.completedFuture(new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK));
+
+        Set<RoleType> roles = findRoles(editDto.getRoles());
+        // Без пароля в запросе текущий хеш сохраняется, переданный пароль хешируется (как в UserServiceImpl)
+        CompletableFuture<String> newPasswordHash = editDto.getPassword() == null
+                ? CompletableFuture.completedFuture(current.getPassword())
+                : passwordHasher.hash(editDto.getPassword());
+        return newPasswordHash.thenApplyAsync(passwordHash -> saveUser(login, editDto, passwordHash, roles, ifMatch), taskExecutor);
+    }
+
+    // Изменение применяется, только если пользователь не изменился после проверки If-Match: 412 при If-Match, иначе 409
+    private ResponseEntity<ResponseAPI> saveUser(String login, UserDataRequest editDto, String passwordHash,
+                                                 Set<RoleType> roles, String ifMatch) {
+        StoredUser current = store.findByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (ifMatch != null && !ETags.matches(ifMatch, ETags.forUser(current.getId(), current.getVersion())))
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        StoredUser user;
+        try {
+            user = store.update(login, current.getVersion(), editDto.getLogin(), editDto.getName(), passwordHash, roles)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        } catch (OptimisticLockingFailureException e) {
+            if (ifMatch != null)
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+            throw e;
+        } catch (DataIntegrityViolationException e) {
+            return loginConflict(new LinkedHashMap<>());
+        }
+        eventPublisher.publishEvent(new UserChangedEvent(login, user.getLogin(), user.getName(), user.getRoles()));
+        return ResponseEntity.ok()
+                .eTag(ETags.forUser(user.getId(), user.getVersion()))
+                .body(new BooleanResponseDTO(true));
+    }
+
+    @Override
+    public ResponseEntity<ResponseAPI> getAll(Integer limit, String after) {
+        return page(limit, after, user -> true);
+    }
+
+    @Override
+    public String getAllETag() {
+        return ETags.forUserList(store.getTableVersion());
+    }
+
+    // Счётчик изменений хранилища увеличивается после изменения карты пользователей, поэтому подходит и для ролей
+    @Override
+    public String getAllByRoleETag(String role) {
+        if (RoleType.fromName(role) == null)
+            throw new IllegalArgumentException("unknown role");
+        return getAllETag();
+    }
+
+    @Override
+    public ResponseEntity<ResponseAPI> getAllByRole(String role, Integer limit, String after) {
+        RoleType roleType = RoleType.fromName(role);
+        if (roleType == null)
+            throw new IllegalArgumentException("unknown role");
+        return page(limit, after, user -> user.getRoles().contains(roleType));
+    }
+
+    // Число пользователей, всего и по ролям, из счётчиков хранилища
+    @Override
+    public ResponseEntity<ResponseAPI> getStats() {
+        Map<RoleType, Long> roleCounts = new EnumMap<>(RoleType.class);
+        for (RoleType role : RoleType.values())
+            roleCounts.put(role, (long) store.countByRole(role));
+        return new ResponseEntity<>(new UserStatsResponse(store.size(), roleCounts), HttpStatus.OK);
+    }
+
+    @Override
+    public ResponseEntity<ResponseAPI> search(String query, Integer limit, String after) {
+        if (query == null || query.isEmpty())
+            throw new IllegalArgumentException("query must not be empty");
+        String normalized = query.toLowerCase(Locale.ROOT);
+        Predicate<String> matches = normalized.length() < SUBSTRING_QUERY_LENGTH
+                ? value -> value.toLowerCase(Locale.ROOT).startsWith(normalized)
+                : value -> value.toLowerCase(Locale.ROOT).contains(normalized);
+        ResponseEntity<ResponseAPI> response = page(limit, after,
+                user -> matches.test(user.getLogin()) || matches.test(user.getName()));
+        // Как и у UserServiceImpl, результаты поиска отдаются без ETag
+        return new ResponseEntity<>(response.getBody(), HttpStatus.OK);
+    }
+
+    @Override
+    public ResponseEntity<ResponseAPI> getUser(String login) {
+        StoredUser user = store.findByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return ResponseEntity.ok()
+                .eTag(ETags.forUser(user.getId(), user.getVersion()))
+                .body(UserMapper.toDtoWithRoles(user));
+    }
+
+    @Override
+    public String getUserETag(String login) {
+        StoredUser user = store.findByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return ETags.forUser(user.getId(), user.getVersion());
+    }
+
+    @Override
+    public ResponseEntity<ResponseAPI> deleteUser(String login) {
+        if (store.deleteByLogin(login).isPresent())
+            eventPublisher.publishEvent(new UserChangedEvent(login, null, null, null));
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    // Массовый импорт с ошибками по каждой записи "<номер записи>.<поле>", как у UserServiceImpl
+    @Override
+    public CompletableFuture<ResponseEntity<ResponseAPI>> importUsers(List<UserDataRequest> users) {
+        List<Map<String, String>> recordErrors = users.parallelStream()
+                .map(validator::validate)
+                .collect(Collectors.toList());
+
+        Set<String> takenLogins = new HashSet<>();
+        List<String> logins = users.stream()
+                .map(UserDataRequest::getLogin)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        takenLogins.addAll(store.findExistingLogins(logins));
+
+        Map<String, String> errors = new LinkedHashMap<>();
+        List<UserDataRequest> newUsers = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            UserDataRequest dto = users.get(i);
+            Map<String, String> userErrors = recordErrors.get(i);
+            metrics.validationFailed(userErrors);
+            if (dto.getLogin() != null && !takenLogins.add(dto.getLogin())) {
+                metrics.loginConflict();
+                userErrors.put("login", "login already exists");
+            }
+            if (userErrors.size() > 0) {
+                for (Map.Entry<String, String> error : userErrors.entrySet())
+                    errors.put(i + "." + error.getKey(), error.getValue());
+                continue;
+            }
+            newUsers.add(dto);
+        }
+
+        List<String> passwords = newUsers.stream().map(UserDataRequest::getPassword).collect(Collectors.toList());
+        return passwordHasher.hashAll(passwords)
+                .thenApplyAsync(passwordHashes -> {
+                    List<StoredUser> records = new ArrayList<>(newUsers.size());
+                    for (int i = 0; i < newUsers.size(); i++) {
+                        UserDataRequest dto = newUsers.get(i);
+                        records.add(new StoredUser(0, dto.getLogin(), dto.getName(), passwordHashes.get(i), 0,
+                                findRoles(dto.getRoles())));
+                    }
+                    // Логин, занятый параллельным запросом после проверки, пропускается хранилищем (null)
+                    for (StoredUser user : store.insertAll(records)) {
+                        if (user != null)
+                            eventPublisher.publishEvent(new UserChangedEvent(null, user.getLogin(), user.getName(),
+                                    user.getRoles()));
+                    }
+
+                    if (errors.size() > 0)
+                        return new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK);
+                    return new ResponseEntity<>(new BooleanResponseDTO(true), HttpStatus.OK);
+                }, taskExecutor);
+    }
+
+    @Override
+    public CompletableFuture<ResponseEntity<ResponseAPI>> verifyPassword(String login, String password) {
+        StoredUser user = store.findByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (password == null)
+            return CompletableFuture.completedFuture(new ResponseEntity<>(new BooleanResponseDTO(false), HttpStatus.OK));
+        return passwordHasher.matches(password, user.getPassword())
+                .thenApply(matches -> new ResponseEntity<>(new BooleanResponseDTO(matches), HttpStatus.OK));
+    }
+
+    // Страница пользователей, подходящих под filter, по возрастанию login; ETag - счётчик изменений хранилища
+    private ResponseEntity<ResponseAPI> page(Integer limit, String after, Predicate<StoredUser> filter) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("limit must be positive");
+
+        String etag = ETags.forUserList(store.getTableVersion());
+        List<StoredUser> page = store.findPageAfter(after, pageSize + 1, filter);
+        boolean hasNext = page.size() > pageSize;
+        List<UserDTO> userDtoList = new ArrayList<>(Math.min(page.size(), pageSize));
+        for (StoredUser user : hasNext ? page.subList(0, pageSize) : page)
+            userDtoList.add(UserMapper.toDto(user));
+        String nextCursor = hasNext ? userDtoList.get(pageSize - 1).getLogin() : null;
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .body(new UserListResponse(userDtoList.size(), userDtoList, nextCursor));
+    }
+
+    private ResponseEntity<ResponseAPI> loginConflict(Map<String, String> errors) {
+        metrics.loginConflict();
+        errors.put("login", "login already exists");
+        return new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK);
+    }
+
+    // Переданные роли (названия уже проверены UserRequestValidator)
+    private static Set<RoleType> findRoles(List<String> roleNames) {
+        Set<RoleType> roles = EnumSet.noneOf(RoleType.class);
+        if (roleNames != null) {
+            for (String role : roleNames)
+                roles.add(RoleType.fromName(role));
+        }
+        return roles;
+    }
+}
@@ -0,0 +1,80 @@
+package main.service;
+
+import main.metrics.OperationContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Хеширование и проверка паролей BCrypt на отдельном пуле потоков ограниченного размера,
+// чтобы дорогие вычисления не занимали потоки обработки запросов Tomcat.
+// При переполнении очереди задача отклоняется RejectedExecutionException (ответ 503)
+@Component
+public class PasswordHasher {
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    // Задачи пула выполняются с операцией UserService поставившего их потока (для метрик)
+    private final Executor operationExecutor;
+
+    public PasswordHasher(@Value("${user.password.bcrypt-strength:10}") int strength,
+                          @Value("${user.password.pool-size:0}") int poolSize,
+                          @Value("${user.password.queue-capacity:100}") int queueCapacity) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.operationExecutor = task -> executor.execute(OperationContext.wrap(task));
+    }
+
+    public CompletableFuture<String> hash(String password) {
+        return CompletableFuture.supplyAsync(() -> encoder.encode(password), operationExecutor);
+    }
+
+    // Пароли хешируются группами по числу потоков пула, чтобы большой импорт не переполнял очередь
+    public CompletableFuture<List<String>> hashAll(List<String> passwords) {
+        int threads = executor.getMaximumPoolSize();
+        int chunkSize = Math.max(1, (passwords.size() + threads - 1) / threads);
+        List<CompletableFuture<List<String>>> chunks = new ArrayList<>();
+        for (int from = 0; from < passwords.size(); from += chunkSize) {
+            List<String> chunk = passwords.subList(from, Math.min(from + chunkSize, passwords.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                List<String> hashes = new ArrayList<>(chunk.size());
+                for (String password : chunk)
+                    hashes.add(encoder.encode(password));
+                return hashes;
+            }, operationExecutor));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    List<String> hashes = new ArrayList<>(passwords.size());
+                    for (CompletableFuture<List<String>> chunk : chunks)
+                        hashes.addAll(chunk.join());
+                    return hashes;
+                });
+    }
+
+    public CompletableFuture<Boolean> matches(String password, String passwordHash) {
+        return CompletableFuture.supplyAsync(() -> encoder.matches(password, passwordHash), operationExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
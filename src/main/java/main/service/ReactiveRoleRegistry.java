@@ -0,0 +1,45 @@
+package main.service;
+
+import main.model.enums.RoleType;
+import main.model.reactive.RoleRecord;
+import main.repository.reactive.RoleReactiveRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+// Справочник ролей для реактивного варианта: как и RoleRegistry, загружается один раз при старте
+// (после миграций схемы Flyway)
+@Component
+@Profile("reactive")
+@DependsOn("flyway")
+public class ReactiveRoleRegistry {
+    private final RoleReactiveRepository roleRepository;
+    private volatile Map<RoleType, RoleRecord> roles = Collections.emptyMap();
+
+    @Autowired
+    public ReactiveRoleRegistry(RoleReactiveRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    // Загрузка при старте блокирующая: запросы ещё не обрабатываются
+    @PostConstruct
+    public void refresh() {
+        Map<RoleType, RoleRecord> loaded = new EnumMap<>(RoleType.class);
+        for (RoleRecord role : roleRepository.findAll().toIterable())
+            loaded.put(role.getName(), role);
+        roles = Collections.unmodifiableMap(loaded);
+    }
+
+    // Роль по имени из запроса; пусто, если такого RoleType нет или роль отсутствует в БД
+    public Optional<RoleRecord> find(String name) {
+        RoleType roleType = RoleType.fromName(name);
+        return roleType == null ? Optional.empty() : Optional.ofNullable(roles.get(roleType));
+    }
+}
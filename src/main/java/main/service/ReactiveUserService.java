@@ -0,0 +1,30 @@
+package main.service;
+
+import main.api.request.UserDataRequest;
+import main.api.response.ResponseAPI;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface ReactiveUserService {
+    Mono<ResponseEntity<ResponseAPI>> createUser(UserDataRequest registerDto);
+
+    Mono<ResponseEntity<ResponseAPI>> updateUser(String login, UserDataRequest editDto);
+
+    Mono<ResponseEntity<ResponseAPI>> getAll(Integer limit, String after);
+
+    Mono<ResponseEntity<ResponseAPI>> getAllByRole(String role, Integer limit, String after);
+
+    Mono<ResponseEntity<ResponseAPI>> getStats();
+
+    Mono<ResponseEntity<ResponseAPI>> search(String query, Integer limit, String after);
+
+    Mono<ResponseEntity<ResponseAPI>> getUser(String login);
+
+    Mono<ResponseEntity<ResponseAPI>> deleteUser(String login);
+
+    Mono<ResponseEntity<ResponseAPI>> importUsers(List<UserDataRequest> users);
+
+    Mono<ResponseEntity<ResponseAPI>> verifyPassword(String login, String password);
+}
@@ -0,0 +1,382 @@
+package main.service;
+
+import main.api.request.UserDataRequest;
+import main.api.response.BooleanResponseDTO;
+import main.api.response.ResponseAPI;
+import main.api.response.UserDTO;
+import main.api.response.UserListResponse;
+import main.api.response.UserStatsResponse;
+import main.metrics.UserMetrics;
+import main.model.enums.RoleType;
+import main.model.reactive.RoleRecord;
+import main.model.reactive.UserRecord;
+import main.model.reactive.UserRoleRecord;
+import main.repository.reactive.RoleReactiveRepository;
+import main.repository.reactive.UserReactiveRepository;
+import main.repository.reactive.UserRoleReactiveRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Реактивная реализация UserService (профиль reactive): те же проверки и ответы, что в UserServiceImpl,
+// но запросы к БД через R2DBC без блокировки потоков. Пароли хешируются на том же пуле PasswordHasher.
+// События UserChangedEvent публикуются после коммита транзакции
+@Service
+@Profile("reactive")
+public class ReactiveUserServiceImpl implements ReactiveUserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int SUBSTRING_QUERY_LENGTH = 3;
+
+    private UserReactiveRepository userRepository;
+    private RoleReactiveRepository roleRepository;
+    private UserRoleReactiveRepository userRoleRepository;
+    private ReactiveRoleRegistry roleRegistry;
+    private UserRequestValidator validator;
+    private PasswordHasher passwordHasher;
+    private UserMetrics metrics;
+    private ApplicationEventPublisher eventPublisher;
+    private TransactionalOperator transaction;
+
+    @Autowired
+    public ReactiveUserServiceImpl(UserReactiveRepository userRepository,
+                                   RoleReactiveRepository roleRepository,
+                                   UserRoleReactiveRepository userRoleRepository,
+                                   ReactiveRoleRegistry roleRegistry,
+                                   UserRequestValidator validator,
+                                   PasswordHasher passwordHasher,
+                                   UserMetrics metrics,
+                                   ApplicationEventPublisher eventPublisher,
+                                   ReactiveTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.userRoleRepository = userRoleRepository;
+        this.roleRegistry = roleRegistry;
+        this.validator = validator;
+        this.passwordHasher = passwordHasher;
+        this.metrics = metrics;
+        this.eventPublisher = eventPublisher;
+        this.transaction = TransactionalOperator.create(transactionManager);
+    }
+
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> createUser(UserDataRequest registerDto) {
+        // Проверка пришедших значений на ошибки
+        Map<String, String> errors = validator.validate(registerDto);  //проверка полей запроса на ошибки
+        metrics.validationFailed(errors);
+        if (errors.size() > 0)
+            return Mono.just(errorResponse(errors));
+
+        Set<Integer> roleIds = findRoleIds(registerDto.getRoles());
+        return Mono.defer(() -> Mono.fromFuture(passwordHasher.hash(registerDto.getPassword())))
+                .flatMap(passwordHash -> insertUser(
+                        new UserRecord(registerDto.getLogin(), registerDto.getName(), passwordHash), roleIds)
+                        .flatMap(user -> userRepository.incrementTableVersion().thenReturn(user))
+                        .as(transaction::transactional))
+                .doOnNext(user -> eventPublisher.publishEvent(new UserChangedEvent(null, user.getLogin(), user.getName(),
+                        findRoleTypes(registerDto.getRoles()))))
+                .map(user -> okResponse())
+                // Занятость логина проверяется ограничением уникальности, а не предварительным select
+                .onErrorResume(DataIntegrityViolationException.class, e -> userRepository.findByLogin(registerDto.getLogin())
+                        .map(existing -> loginExistsResponse())
+                        .switchIfEmpty(Mono.error(e)));
+    }
+
+    // Без пароля в запросе текущий хеш сохраняется без хеширования, переданный пароль хешируется всегда
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> updateUser(String login, UserDataRequest editDto) {
+        // Найти редактируемого User в БД по login или ответ со статусом 404
+        return userRepository.findByLogin(login)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .flatMap(current -> {
+                    Map<String, String> errors = validator.validate(editDto, false);  //проверка полей запроса на ошибки
+                    metrics.validationFailed(errors);
+                    // Смена логина - обычный update строки: id пользователя и его связи в user2role не меняются
+                    Mono<Boolean> loginTaken = login.equals(editDto.getLogin())
+                            ? Mono.just(false)
+                            : userRepository.findByLogin(editDto.getLogin()).hasElement();
+                    return loginTaken.flatMap(taken -> {
+                        if (taken) {
+                            metrics.loginConflict();
+                            errors.put("login", "login already exists");
+                        }
+                        if (errors.size() > 0)
+                            return Mono.just(errorResponse(errors));
+                        return saveUser(current, editDto);
+                    });
+                });
+    }
+
+    // Строка users обновляется с проверкой версии (UPDATE ... WHERE version = ?): если пользователя изменил
+    // параллельный запрос между чтением и записью, изменение не выполняется - 409, как в основном варианте.
+    // Запрос без изменений полей и ролей ничего не записывает и не меняет ни версию пользователя, ни ETag списка
+    private Mono<ResponseEntity<ResponseAPI>> saveUser(UserRecord current, UserDataRequest editDto) {
+        Set<Integer> roleIds = findRoleIds(editDto.getRoles());
+        String login = current.getLogin();
+        Mono<String> newPasswordHash = editDto.getPassword() == null
+                ? Mono.just(current.getPassword())
+                : Mono.defer(() -> Mono.fromFuture(passwordHasher.hash(editDto.getPassword())));
+        return newPasswordHash
+                .zipWith(userRoleRepository.findByUserId(current.getId())
+                        .map(UserRoleRecord::getRoleId)
+                        .collect(Collectors.toSet()))
+                .flatMap(hashAndRoles -> {
+                    String passwordHash = hashAndRoles.getT1();
+                    Set<Integer> currentRoleIds = hashAndRoles.getT2();
+                    boolean changed = !Objects.equals(current.getLogin(), editDto.getLogin())
+                            || !Objects.equals(current.getName(), editDto.getName())
+                            || !Objects.equals(current.getPassword(), passwordHash)
+                            || !currentRoleIds.equals(roleIds);
+                    if (!changed)
+                        return Mono.just(okResponse());
+                    //Редактирование и сохранение User
+                    return userRepository.updateIfVersion(current.getId(), current.getVersion(),
+                            editDto.getLogin(), editDto.getName(), passwordHash)
+                            .flatMap(updated -> updated > 0 ? Mono.just(updated)
+                                    : Mono.error(new OptimisticLockingFailureException("user " + login + " was changed concurrently")))
+                            .then(updateRoles(current.getId(), currentRoleIds, roleIds))
+                            .then(userRepository.incrementTableVersion())
+                            .as(transaction::transactional)
+                            .doOnSuccess(version -> eventPublisher.publishEvent(new UserChangedEvent(login, editDto.getLogin(),
+                                    editDto.getName(), findRoleTypes(editDto.getRoles()))))
+                            .thenReturn(okResponse());
+                })
+                .onErrorResume(DataIntegrityViolationException.class, e -> Mono.just(loginExistsResponse()));
+    }
+
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> getAll(Integer limit, String after) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        if (pageSize <= 0)
+            return Mono.error(new IllegalArgumentException("limit must be positive"));
+
+        // Запрашивается на одну запись больше, чтобы без count-запроса узнать, есть ли следующая страница
+        return userRepository.findPageAfter(after == null ? "" : after, pageSize + 1)
+                .collectList()
+                .map(page -> pageResponse(page, pageSize));
+    }
+
+    // Пользователи роли запросом по индексу user2role (role_id, user_id), постранично как в getAll
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> getAllByRole(String role, Integer limit, String after) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        if (pageSize <= 0)
+            return Mono.error(new IllegalArgumentException("limit must be positive"));
+        RoleRecord roleRecord = roleRegistry.find(role).orElse(null);
+        if (roleRecord == null)
+            return Mono.error(new IllegalArgumentException("unknown role"));
+
+        return userRepository.findPageByRoleAfter(roleRecord.getId(), after == null ? "" : after, pageSize + 1)
+                .collectList()
+                .map(page -> pageResponse(page, pageSize));
+    }
+
+    // Число пользователей, всего и по ролям, агрегирующими запросами (счётчиков в памяти у реактивного варианта нет)
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> getStats() {
+        Mono<Map<RoleType, Long>> roleCounts = Flux.fromArray(RoleType.values())
+                .concatMap(role -> roleRegistry.find(role.name())
+                        .map(roleRecord -> userRoleRepository.countByRoleId(roleRecord.getId()))
+                        .orElse(Mono.just(0L))
+                        .map(count -> Map.entry(role, count)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, () -> new EnumMap<>(RoleType.class));
+        return Mono.zip(userRepository.count(), roleCounts)
+                .map(counts -> new ResponseEntity<>(new UserStatsResponse(counts.getT1(), counts.getT2()), HttpStatus.OK));
+    }
+
+    // Поиск по login и name запросом LIKE (индекса поиска в памяти у реактивного варианта нет):
+    // до трёх символов - по префиксу, иначе по подстроке. Постраничная выдача как в getAll
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> search(String query, Integer limit, String after) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        if (pageSize <= 0)
+            return Mono.error(new IllegalArgumentException("limit must be positive"));
+        if (query == null || query.isEmpty())
+            return Mono.error(new IllegalArgumentException("query must not be empty"));
+        String escaped = query.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        String pattern = query.length() < SUBSTRING_QUERY_LENGTH ? escaped + "%" : "%" + escaped + "%";
+
+        return userRepository.searchPageAfter(pattern, after == null ? "" : after, pageSize + 1)
+                .collectList()
+                .map(page -> pageResponse(page, pageSize));
+    }
+
+    private static ResponseEntity<ResponseAPI> pageResponse(List<UserRecord> page, int pageSize) {
+        boolean hasNext = page.size() > pageSize;
+        List<UserDTO> userDtoList = new ArrayList<>(Math.min(page.size(), pageSize));
+        for (UserRecord user : hasNext ? page.subList(0, pageSize) : page)
+            userDtoList.add(UserMapper.toDto(user));
+        String nextCursor = hasNext ? userDtoList.get(pageSize - 1).getLogin() : null;
+        return new ResponseEntity<>(new UserListResponse(userDtoList.size(), userDtoList, nextCursor), HttpStatus.OK);
+    }
+
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> getUser(String login) {
+        // Найти User в БД по login или ответ со статусом 404, затем его роли
+        return userRepository.findByLogin(login)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .flatMap(user -> roleRepository.findByUserId(user.getId())
+                        .collectList()
+                        .map(roles -> new ResponseEntity<>(UserMapper.toDtoWithRoles(user, roles), HttpStatus.OK)));
+    }
+
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> deleteUser(String login) {
+        return userRoleRepository.deleteByLogin(login)
+                .then(userRepository.deleteByLogin(login))
+                .flatMap(deleted -> deleted > 0 ? userRepository.incrementTableVersion() : Mono.just(0))
+                .as(transaction::transactional)
+                .doOnSuccess(deleted -> eventPublisher.publishEvent(new UserChangedEvent(login, null, null, null)))
+                .thenReturn(new ResponseEntity<>(HttpStatus.OK));
+    }
+
+    // Массовый импорт: проверка занятых логинов одним IN-запросом, хеширование паролей на пуле PasswordHasher,
+    // вставка всех записей в одной транзакции. Ошибки возвращаются по каждой записи с ключом "<номер записи>.<поле>"
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> importUsers(List<UserDataRequest> users) {
+        List<Map<String, String>> recordErrors = users.stream()
+                .map(validator::validate)
+                .collect(Collectors.toList());
+        List<String> logins = users.stream()
+                .map(UserDataRequest::getLogin)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        Mono<Set<String>> existingLogins = logins.isEmpty()
+                ? Mono.just(new HashSet<>())
+                : userRepository.findExistingLogins(logins).map(UserRecord::getLogin).collect(Collectors.toSet());
+
+        return existingLogins.flatMap(takenLogins -> {
+            Map<String, String> errors = new LinkedHashMap<>();
+            List<UserDataRequest> newUsers = new ArrayList<>();
+            for (int i = 0; i < users.size(); i++) {
+                UserDataRequest dto = users.get(i);
+                Map<String, String> userErrors = recordErrors.get(i);
+                metrics.validationFailed(userErrors);
+                // Логин занят в БД или встречался раньше в этом же импорте
+                if (dto.getLogin() != null && !takenLogins.add(dto.getLogin())) {
+                    metrics.loginConflict();
+                    userErrors.put("login", "login already exists");
+                }
+                if (userErrors.size() > 0) {
+                    for (Map.Entry<String, String> error : userErrors.entrySet())
+                        errors.put(i + "." + error.getKey(), error.getValue());
+                    continue;
+                }
+                newUsers.add(dto);
+            }
+
+            List<String> passwords = newUsers.stream().map(UserDataRequest::getPassword).collect(Collectors.toList());
+            return Mono.defer(() -> Mono.fromFuture(passwordHasher.hashAll(passwords)))
+                    .flatMap(passwordHashes -> Flux.range(0, newUsers.size())
+                            .concatMap(i -> {
+                                UserDataRequest dto = newUsers.get(i);
+                                return insertUser(new UserRecord(dto.getLogin(), dto.getName(), passwordHashes.get(i)),
+                                        findRoleIds(dto.getRoles()));
+                            })
+                            .collectList()
+                            .flatMap(inserted -> inserted.isEmpty()
+                                    ? Mono.just(inserted)
+                                    : userRepository.incrementTableVersion().thenReturn(inserted))
+                            .as(transaction::transactional)
+                            // Записи вставляются по порядку (concatMap): inserted.get(i) соответствует newUsers.get(i)
+                            .doOnNext(inserted -> {
+                                for (int i = 0; i < inserted.size(); i++)
+                                    eventPublisher.publishEvent(new UserChangedEvent(null, inserted.get(i).getLogin(),
+                                            inserted.get(i).getName(), findRoleTypes(newUsers.get(i).getRoles())));
+                            })
+                            .then())
+                    .then(Mono.fromSupplier(() -> errors.size() > 0 ? errorResponse(errors) : okResponse()));
+        });
+    }
+
+    // Проверка пароля пользователя на том же пуле PasswordHasher
+    @Override
+    public Mono<ResponseEntity<ResponseAPI>> verifyPassword(String login, String password) {
+        return userRepository.findByLogin(login)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .flatMap(user -> password == null
+                        ? Mono.just(false)
+                        : Mono.defer(() -> Mono.fromFuture(passwordHasher.matches(password, user.getPassword()))))
+                .map(matches -> new ResponseEntity<>(new BooleanResponseDTO(matches), HttpStatus.OK));
+    }
+
+    private Mono<UserRecord> insertUser(UserRecord user, Set<Integer> roleIds) {
+        return userRepository.save(user)
+                .flatMap(saved -> Flux.fromIterable(roleIds)
+                        .concatMap(roleId -> userRoleRepository.insert(saved.getId(), roleId))
+                        .then(Mono.just(saved)));
+    }
+
+    // Связи в user2role меняются по разнице множеств: неизменный набор ролей не приводит ни к одной записи
+    private Mono<Void> updateRoles(Long userId, Set<Integer> currentRoleIds, Set<Integer> roleIds) {
+        Set<Integer> removed = new HashSet<>(currentRoleIds);
+        removed.removeAll(roleIds);
+        Set<Integer> added = new HashSet<>(roleIds);
+        added.removeAll(currentRoleIds);
+        Mono<Integer> delete = removed.isEmpty() ? Mono.just(0) : userRoleRepository.delete(userId, removed);
+        return delete.thenMany(Flux.fromIterable(added)
+                .concatMap(roleId -> userRoleRepository.insert(userId, roleId)))
+                .then();
+    }
+
+    // Найти переданные роли в справочнике
+    private Set<Integer> findRoleIds(List<String> roleNames) {
+        Set<Integer> roleIds = new HashSet<>();
+        if (roleNames != null) {
+            for (String role : roleNames) {
+                roleIds.add(roleRegistry.find(role).map(RoleRecord::getId).orElseThrow());
+            }
+        }
+        return roleIds;
+    }
+
+    // RoleType переданных ролей (для UserChangedEvent); имена ролей уже проверены валидатором
+    private static Set<RoleType> findRoleTypes(List<String> roleNames) {
+        Set<RoleType> roleTypes = EnumSet.noneOf(RoleType.class);
+        if (roleNames != null) {
+            for (String role : roleNames)
+                roleTypes.add(RoleType.fromName(role));
+        }
+        return roleTypes;
+    }
+
+    private static ResponseEntity<ResponseAPI> okResponse() {
+        return new ResponseEntity<>(new BooleanResponseDTO(true), HttpStatus.OK);
+    }
+
+    private static ResponseEntity<ResponseAPI> errorResponse(Map<String, String> errors) {
+        return new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK);
+    }
+
+    private ResponseEntity<ResponseAPI> loginExistsResponse() {
+        metrics.loginConflict();
+        Map<String, String> errors = new LinkedHashMap<>();
+        errors.put("login", "login already exists");
+        return errorResponse(errors);
+    }
+}
@@ -0,0 +1,133 @@
+package main.service;
+
+import main.model.enums.RoleType;
+import main.repository.UserRepository;
+import main.repository.projection.UserRoleSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пользователи каждой роли в памяти процесса: по RoleType - упорядоченная по login карта login -> name и счётчик.
+ * Списки пользователей роли и их количество отдаются без обращения к user2role.
+ * Строится при старте одним запросом и обновляется по UserChangedEvent после коммита изменений пользователей.
+ * Изменения выполняются под общей блокировкой, чтение идёт без блокировок.
+ * Версия индекса увеличивается после каждого применённого изменения: ETag списка пользователей роли строится по ней,
+ * а не по счётчику изменений таблицы, который меняется при коммите - раньше, чем изменение попадает в индекс.
+ */
+@Component
+@Profile("!reactive & !embedded")
+public class RoleMembershipIndex {
+    private final UserRepository userRepository;
+    private final Map<RoleType, ConcurrentSkipListMap<String, String>> members = new EnumMap<>(RoleType.class);
+    private final Map<RoleType, AtomicInteger> counts = new EnumMap<>(RoleType.class);
+    // login -> роли пользователя, для удаления из карт ролей при изменении и удалении
+    private final Map<String, Set<RoleType>> rolesByLogin = new ConcurrentHashMap<>();
+    // Версия меняется под блокировкой после изменения карт: прочитанная до страницы, она не новее страницы
+    private final String instance = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private volatile long version;
+
+    @Autowired
+    public RoleMembershipIndex(UserRepository userRepository) {
+        this.userRepository = userRepository;
+        for (RoleType role : RoleType.values()) {
+            members.put(role, new ConcurrentSkipListMap<>());
+            counts.put(role, new AtomicInteger());
+        }
+    }
+
+    // Загрузка (и полная перезагрузка) всех связей пользователей с ролями
+    @PostConstruct
+    public synchronized void load() {
+        Map<String, String> names = new HashMap<>();
+        Map<String, Set<RoleType>> loaded = new HashMap<>();
+        for (UserRoleSummary membership : userRepository.findAllRoleMemberships()) {
+            names.put(membership.getLogin(), membership.getName());
+            loaded.computeIfAbsent(membership.getLogin(), login -> EnumSet.noneOf(RoleType.class)).add(membership.getRole());
+        }
+        for (String login : new ArrayList<>(rolesByLogin.keySet()))
+            remove(login);
+        for (Map.Entry<String, Set<RoleType>> user : loaded.entrySet())
+            put(user.getKey(), names.get(user.getKey()), user.getValue());
+        version++;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getOldLogin() != null)
+            remove(event.getOldLogin());
+        if (event.getNewLogin() != null)
+            put(event.getNewLogin(), event.getNewName(), event.getNewRoles());
+    }
+
+    public synchronized void put(String login, String name, Set<RoleType> roles) {
+        remove(login);
+        if (roles == null || roles.isEmpty())
+            return;
+        rolesByLogin.put(login, EnumSet.copyOf(roles));
+        for (RoleType role : roles) {
+            members.get(role).put(login, name);
+            counts.get(role).incrementAndGet();
+        }
+        version++;
+    }
+
+    public synchronized void remove(String login) {
+        Set<RoleType> roles = rolesByLogin.remove(login);
+        if (roles == null)
+            return;
+        for (RoleType role : roles) {
+            members.get(role).remove(login);
+            counts.get(role).decrementAndGet();
+        }
+        version++;
+    }
+
+    // ETag списка пользователей роли: читается до страницы
+    public String getETag() {
+        return ETags.forRoleList(instance, version);
+    }
+
+    // Пользователи роли (login -> name) с login больше after, не более limit, по возрастанию login
+    public List<Map.Entry<String, String>> findPage(RoleType role, String after, int limit) {
+        NavigableMap<String, String> roleMembers = members.get(role);
+        if (after != null)
+            roleMembers = roleMembers.tailMap(after, false);
+        List<Map.Entry<String, String>> page = new ArrayList<>();
+        for (Map.Entry<String, String> member : roleMembers.entrySet()) {
+            if (page.size() == limit)
+                break;
+            page.add(member);
+        }
+        return page;
+    }
+
+    // Количество пользователей роли
+    public int count(RoleType role) {
+        return counts.get(role).get();
+    }
+
+    // Количество пользователей по всем ролям
+    public Map<RoleType, Integer> counts() {
+        Map<RoleType, Integer> result = new EnumMap<>(RoleType.class);
+        for (RoleType role : RoleType.values())
+            result.put(role, count(role));
+        return Collections.unmodifiableMap(result);
+    }
+}
@@ -0,0 +1,43 @@
+package main.service;
+
+import main.model.Role;
+import main.model.enums.RoleType;
+import main.repository.RoleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+// Справочник ролей: таблица roles заполняется миграцией схемы и не меняется во время работы,
+// поэтому загружается один раз при старте и далее роли находятся без обращения к БД
+@Component
+@Profile("!reactive & !embedded")
+public class RoleRegistry {
+    private final RoleRepository roleRepository;
+    private volatile Map<RoleType, Role> roles = Collections.emptyMap();
+
+    @Autowired
+    public RoleRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    // Перечитать роли из БД (при изменении таблицы roles)
+    @PostConstruct
+    public void refresh() {
+        Map<RoleType, Role> loaded = new EnumMap<>(RoleType.class);
+        for (Role role : roleRepository.findAll())
+            loaded.put(role.getName(), role);
+        roles = Collections.unmodifiableMap(loaded);
+    }
+
+    // Роль по имени из запроса; пусто, если такого RoleType нет или роль отсутствует в БД
+    public Optional<Role> find(String name) {
+        RoleType roleType = RoleType.fromName(name);
+        return roleType == null ? Optional.empty() : Optional.ofNullable(roles.get(roleType));
+    }
+}
@@ -0,0 +1,76 @@
+package main.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import main.api.response.ResponseAPI;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+// Кэш ответов getUser (пользователь с ролями и его ETag): ограничен по размеру и времени жизни записи,
+// записи сбрасываются после коммита создания, редактирования и удаления пользователя.
+// Статистика доступна по JMX для подбора размера
+@Component
+@ManagedResource(objectName = "main:type=UserCache")
+public class UserCache {
+    private final Cache<String, ResponseEntity<ResponseAPI>> cache;
+
+    public UserCache(@Value("${user.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${user.cache.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    // Ответ из кэша или загруженный loader; исключения loader пробрасываются и не кэшируются
+    public ResponseEntity<ResponseAPI> get(String login, Function<String, ResponseEntity<ResponseAPI>> loader) {
+        return cache.get(login, loader);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getOldLogin() != null)
+            cache.invalidate(event.getOldLogin());
+        if (event.getNewLogin() != null)
+            cache.invalidate(event.getNewLogin());
+    }
+
+    @ManagedOperation
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @ManagedAttribute
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    @ManagedAttribute
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+}
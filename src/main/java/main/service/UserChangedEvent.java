@@ -0,0 +1,49 @@
+package main.service;
+
+import main.model.enums.RoleType;
+
+import java.util.Set;
+
+// Событие изменения пользователя: публикуется UserServiceImpl, слушатели обрабатывают его после коммита транзакции.
+// oldLogin == null - пользователь создан, newLogin == null - пользователь удалён;
+// newName и newRoles - имя и роли после изменения;
+// tableVersion - значение счётчика изменений таблицы users, записанное транзакцией изменения (0 - неизвестно)
+public class UserChangedEvent {
+    private final String oldLogin;
+    private final String newLogin;
+    private final String newName;
+    private final Set<RoleType> newRoles;
+    private final long tableVersion;
+
+    public UserChangedEvent(String oldLogin, String newLogin, String newName, Set<RoleType> newRoles) {
+        this(oldLogin, newLogin, newName, newRoles, 0);
+    }
+
+    public UserChangedEvent(String oldLogin, String newLogin, String newName, Set<RoleType> newRoles, long tableVersion) {
+        this.oldLogin = oldLogin;
+        this.newLogin = newLogin;
+        this.newName = newName;
+        this.newRoles = newRoles;
+        this.tableVersion = tableVersion;
+    }
+
+    public String getOldLogin() {
+        return oldLogin;
+    }
+
+    public String getNewLogin() {
+        return newLogin;
+    }
+
+    public String getNewName() {
+        return newName;
+    }
+
+    public Set<RoleType> getNewRoles() {
+        return newRoles;
+    }
+
+    public long getTableVersion() {
+        return tableVersion;
+    }
+}
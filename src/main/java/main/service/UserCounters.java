@@ -0,0 +1,131 @@
+package main.service;
+
+import main.model.enums.RoleType;
+import main.repository.UserRepository;
+import main.repository.projection.UserCount;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Число пользователей, всего и по ролям, без обращения к БД.
+ * Общее число загружается при старте одним агрегирующим запросом и меняется по UserChangedEvent после коммита
+ * (создание +1, удаление -1); число пользователей роли ведёт RoleMembershipIndex.
+ * Периодически (user.counters.reconcile-interval) счётчики сверяются с БД тем же запросом.
+ */
+@Component
+@Profile("!reactive & !embedded")
+public class UserCounters {
+    private final UserRepository userRepository;
+    private final RoleMembershipIndex roleMembershipIndex;
+    private final TransactionTemplate snapshot;
+    // Поля меняются под блокировкой this, total читается без неё
+    private volatile long total;
+    // Счётчик изменений таблицы users, на котором выполнена последняя сверка: изменения с таким же или меньшим
+    // значением уже учтены в total
+    private long reconciledVersion;
+    // Изменения, применённые слушателем во время сверки (null - сверка не идёт): счётчик изменений таблицы -> +1/-1
+    private List<long[]> changedDuringReconcile;
+
+    @Autowired
+    public UserCounters(UserRepository userRepository, RoleMembershipIndex roleMembershipIndex,
+                        PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.roleMembershipIndex = roleMembershipIndex;
+        this.snapshot = new TransactionTemplate(transactionManager);
+        this.snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshot.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void load() {
+        reconcile();
+    }
+
+    // Сверка с БД: счётчик изменений таблицы users и число пользователей читаются в одной транзакции
+    // REPEATABLE READ, то есть из одного состояния БД. Изменение, закоммиченное до сверки, может быть уже учтено
+    // в результате, но ещё не в счётчиках: его слушатель выполняется после коммита. Поэтому слушатель пропускает
+    // изменения со счётчиком таблицы не больше сверенного, а изменения, применённые во время сверки, после неё
+    // добавляются к результату, только если они новее прочитанного состояния
+    @Scheduled(fixedDelayString = "${user.counters.reconcile-interval:PT5M}",
+            initialDelayString = "${user.counters.reconcile-interval:PT5M}")
+    public void reconcile() {
+        synchronized (this) {
+            changedDuringReconcile = new ArrayList<>();
+        }
+        Map<RoleType, Long> roleCounts = new EnumMap<>(RoleType.class);
+        for (RoleType role : RoleType.values())
+            roleCounts.put(role, 0L);
+        long[] counted = new long[2];
+        try {
+            snapshot.executeWithoutResult(status -> {
+                counted[0] = userRepository.getTableVersion();
+                for (UserCount count : userRepository.countUsers()) {
+                    if (count.getRole() == null)
+                        counted[1] = count.getTotal();
+                    else
+                        roleCounts.put(RoleType.valueOf(count.getRole()), count.getTotal());
+                }
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changedDuringReconcile = null;
+            }
+            throw e;
+        }
+        long version = counted[0];
+
+        synchronized (this) {
+            List<long[]> changed = changedDuringReconcile;
+            changedDuringReconcile = null;
+            if (version < reconciledVersion)
+                return;
+            long reconciled = counted[1];
+            for (long[] change : changed)
+                if (change[0] == 0 || change[0] > version)
+                    reconciled += change[1];
+            total = reconciled;
+            reconciledVersion = version;
+            // Роли сверяются, только если за время сверки изменений не было: иначе индекс может отличаться от
+            // прочитанного состояния и без ошибки
+            if (changed.isEmpty() && !roleCounts.equals(getRoleCounts()))
+                roleMembershipIndex.load();
+        }
+    }
+
+    // Изменение без счётчика таблицы (0) применяется всегда
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onUserChanged(UserChangedEvent event) {
+        long delta = event.getOldLogin() == null ? 1 : event.getNewLogin() == null ? -1 : 0;
+        if (delta == 0)
+            return;
+        long version = event.getTableVersion();
+        if (version != 0 && version <= reconciledVersion)
+            return;
+        total += delta;
+        if (changedDuringReconcile != null)
+            changedDuringReconcile.add(new long[]{version, delta});
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<RoleType, Long> getRoleCounts() {
+        Map<RoleType, Long> roleCounts = new EnumMap<>(RoleType.class);
+        for (Map.Entry<RoleType, Integer> count : roleMembershipIndex.counts().entrySet())
+            roleCounts.put(count.getKey(), count.getValue().longValue());
+        return roleCounts;
+    }
+}
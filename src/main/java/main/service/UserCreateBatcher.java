@@ -0,0 +1,201 @@
+package main.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import main.model.User;
+import main.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Групповая вставка новых пользователей (createUser) при всплесках регистраций, включается user.create-batch.enabled.
+ * Пользователи с уже захешированными паролями ставятся в ограниченную очередь; отдельный поток собирает пачку
+ * до max-size записей или до истечения max-delay с момента первой записи и вставляет её одной транзакцией:
+ * один select занятых логинов и JDBC-пачки insert (UserRepository.insertAll) - один коммит на пачку.
+ * Результат каждой записи (счётчик изменений таблицы users после коммита её пачки или пустой, если логин занят)
+ * отдаётся после коммита пачки.
+ * При переполнении очереди запись отклоняется RejectedExecutionException (ответ 503).
+ * Метрики: user.create.batch.queue (глубина очереди), user.create.batch.size (размер пачки),
+ * user.create.batch.latency (от постановки в очередь до коммита).
+ */
+@Component
+@Profile("!reactive & !embedded")
+@ConditionalOnProperty(name = "user.create-batch.enabled", havingValue = "true")
+public class UserCreateBatcher {
+    // Как часто поток вставки проверяет флаг остановки, пока очередь пуста
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transaction;
+    private final int maxSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingUser> queue;
+    private final DistributionSummary batchSizes;
+    private final Timer latency;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public UserCreateBatcher(UserRepository userRepository,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry registry,
+                             @Value("${user.create-batch.max-size:500}") int maxSize,
+                             @Value("${user.create-batch.max-delay:10ms}") Duration maxDelay,
+                             @Value("${user.create-batch.queue-capacity:10000}") int queueCapacity) {
+        this.userRepository = userRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.maxSize = maxSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("user.create.batch.queue", queue, BlockingQueue::size)
+                .description("Users waiting for a batched insert")
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("user.create.batch.size")
+                .description("Users inserted in one transaction")
+                .register(registry);
+        this.latency = Timer.builder("user.create.batch.latency")
+                .description("Time from enqueueing a user to the commit of its batch")
+                .register(registry);
+        this.flusher = new Thread(this::run, "user-create-batcher");
+        this.flusher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+    }
+
+    // Оставшиеся в очереди записи вставляются до остановки
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    // Счётчик изменений таблицы users, записанный вставкой, или пустой результат - логин уже занят
+    public CompletableFuture<OptionalLong> insert(User user) {
+        PendingUser pending = new PendingUser(user);
+        if (!running || !queue.offer(pending))
+            return CompletableFuture.failedFuture(new RejectedExecutionException("user create queue is full"));
+        return pending.result;
+    }
+
+    private void run() {
+        List<PendingUser> batch = new ArrayList<>(maxSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingUser first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxSize - batch.size());
+                        break;
+                    }
+                    PendingUser next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingUser> batch) {
+        batchSizes.record(batch.size());
+        try {
+            transaction.executeWithoutResult(status -> insertBatch(batch));
+        } catch (DataIntegrityViolationException e) {
+            // Логин занят параллельной вставкой вне очереди: пачка откатилась, записи вставляются по одной
+            insertEach(batch);
+        } catch (RuntimeException e) {
+            for (PendingUser pending : batch)
+                pending.error = e;
+        }
+
+        long now = System.nanoTime();
+        for (PendingUser pending : batch) {
+            latency.record(now - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+            if (pending.error != null)
+                pending.result.completeExceptionally(pending.error);
+            else
+                pending.result.complete(pending.inserted ? OptionalLong.of(pending.tableVersion) : OptionalLong.empty());
+        }
+    }
+
+    // Занятые логины - одним запросом; повтор логина внутри пачки тоже считается занятым
+    private void insertBatch(List<PendingUser> batch) {
+        List<String> logins = batch.stream().map(pending -> pending.user.getLogin()).collect(Collectors.toList());
+        Set<String> takenLogins = new HashSet<>(userRepository.findExistingLogins(logins));
+        List<User> users = new ArrayList<>(batch.size());
+        for (PendingUser pending : batch) {
+            pending.inserted = takenLogins.add(pending.user.getLogin());
+            if (pending.inserted)
+                users.add(pending.user);
+        }
+        long tableVersion = userRepository.insertAll(users);
+        for (PendingUser pending : batch)
+            pending.tableVersion = tableVersion;
+    }
+
+    private void insertEach(List<PendingUser> batch) {
+        for (PendingUser pending : batch) {
+            // id, присвоенный в откатившейся пачке, недействителен
+            pending.user.setId(null);
+            try {
+                pending.tableVersion = userRepository.insert(pending.user);
+                pending.inserted = true;
+            } catch (DataIntegrityViolationException e) {
+                pending.inserted = false;
+                if (!userRepository.existsByLogin(pending.user.getLogin()))
+                    pending.error = e;
+            } catch (RuntimeException e) {
+                pending.error = e;
+            }
+        }
+    }
+
+    private static class PendingUser {
+        private final User user;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<OptionalLong> result = new CompletableFuture<>();
+        // Заполняются потоком вставки
+        private boolean inserted;
+        private long tableVersion;
+        private RuntimeException error;
+
+        private PendingUser(User user) {
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package main.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Готовый ответ GET /user/ без параметров (первая страница): JSON в UTF-8 и, если включено, его gzip-версия.
+ * Включается user.list-snapshot.enabled. Снимок неизменяем и заменяется целиком после коммита изменений
+ * пользователей; пересборка идёт в отдельном потоке, и серия изменений приводит к одной-двум пересборкам.
+ * Пока новый снимок собирается, читатели получают предыдущий, не дожидаясь сериализации; поэтому снимок
+ * отдаётся, только если его ETag совпадает с текущим ETag списка. Если пересборка не удалась, снимок сбрасывается
+ * до следующей успешной пересборки, а запросы обслуживаются обычным путём.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "user.list-snapshot.enabled", havingValue = "true")
+public class UserListSnapshot {
+    private static final Logger log = LoggerFactory.getLogger(UserListSnapshot.class);
+
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final boolean gzip;
+    private final ExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private volatile Snapshot snapshot;
+
+    public UserListSnapshot(UserService userService,
+                            ObjectMapper objectMapper,
+                            @Value("${user.list-snapshot.gzip:true}") boolean gzip) {
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.gzip = gzip;
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "user-list-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Последний собранный снимок (может отставать от БД) или null, пока снимок не собран
+    public Snapshot get() {
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        scheduleRebuild();
+    }
+
+    // Пока пересборка стоит в очереди, новые изменения не ставят ещё одну: она и так прочитает их из БД
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true))
+            rebuildExecutor.execute(this::rebuild);
+    }
+
+    private void rebuild() {
+        // Сброс до чтения из БД: изменения, закоммиченные во время сборки, запланируют следующую
+        rebuildScheduled.set(false);
+        try {
+            ResponseEntity<?> response = userService.getAll(null, null);
+            byte[] json = objectMapper.writeValueAsBytes(response.getBody());
+            snapshot = new Snapshot(json, gzip ? gzip(json) : null, response.getHeaders().getETag());
+        } catch (JsonProcessingException | RuntimeException e) {
+            snapshot = null;
+            log.warn("User list snapshot rebuild failed, serving the list without it", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    public static final class Snapshot {
+        private final byte[] json;
+        private final byte[] gzippedJson;
+        private final String etag;
+
+        private Snapshot(byte[] json, byte[] gzippedJson, String etag) {
+            this.json = json;
+            this.gzippedJson = gzippedJson;
+            this.etag = etag;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        // null, если gzip-версия отключена
+        public byte[] getGzippedJson() {
+            return gzippedJson;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package main.service;
+
+import main.api.response.UserDTO;
+import main.model.Role;
+import main.model.User;
+import main.model.embedded.StoredUser;
+import main.model.enums.RoleType;
+import main.model.reactive.RoleRecord;
+import main.model.reactive.UserRecord;
+import main.repository.projection.UserSummary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+// Преобразование данных пользователя из БД в UserDTO для ответов API
+public final class UserMapper {
+    private UserMapper() {
+    }
+
+    // Пользователь для списка (без ролей)
+    public static UserDTO toDto(UserSummary user) {
+        UserDTO dto = new UserDTO();
+        dto.setLogin(user.getLogin());
+        dto.setName(user.getName());
+        return dto;
+    }
+
+    // Пользователь с его ролями
+    public static UserDTO toDtoWithRoles(User user) {
+        List<RoleType> roles = new ArrayList<>(user.getRoles().size());
+        for (Role role : user.getRoles())
+            roles.add(role.getName());
+
+        UserDTO dto = new UserDTO();
+        dto.setLogin(user.getLogin());
+        dto.setName(user.getName());
+        dto.setRoles(roles);
+        return dto;
+    }
+
+    // Набор RoleType ролей пользователя (для UserChangedEvent)
+    public static Set<RoleType> toRoleTypes(Collection<Role> roles) {
+        Set<RoleType> roleTypes = EnumSet.noneOf(RoleType.class);
+        for (Role role : roles)
+            roleTypes.add(role.getName());
+        return roleTypes;
+    }
+
+    // Пользователь для списка (без ролей), реактивный вариант
+    public static UserDTO toDto(UserRecord user) {
+        UserDTO dto = new UserDTO();
+        dto.setLogin(user.getLogin());
+        dto.setName(user.getName());
+        return dto;
+    }
+
+    // Пользователь с его ролями, реактивный вариант
+    public static UserDTO toDtoWithRoles(UserRecord user, List<RoleRecord> userRoles) {
+        List<RoleType> roles = new ArrayList<>(userRoles.size());
+        for (RoleRecord role : userRoles)
+            roles.add(role.getName());
+
+        UserDTO dto = new UserDTO();
+        dto.setLogin(user.getLogin());
+        dto.setName(user.getName());
+        dto.setRoles(roles);
+        return dto;
+    }
+
+    // Пользователь для списка (без ролей), встроенное хранилище
+    public static UserDTO toDto(StoredUser user) {
+        UserDTO dto = new UserDTO();
+        dto.setLogin(user.getLogin());
+        dto.setName(user.getName());
+        return dto;
+    }
+
+    // Пользователь с его ролями, встроенное хранилище
+    public static UserDTO toDtoWithRoles(StoredUser user) {
+        UserDTO dto = new UserDTO();
+        dto.setLogin(user.getLogin());
+        dto.setName(user.getName());
+        dto.setRoles(new ArrayList<>(user.getRoles()));
+        return dto;
+    }
+}
@@ -0,0 +1,75 @@
+package main.service;
+
+import main.api.request.UserDataRequest;
+import main.model.enums.RoleType;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Проверка полей запроса на создание/редактирование пользователя.
+ * Каждое поле проверяется одним проходом по символам без регулярных выражений
+ * и без создания промежуточных строк.
+ */
+@Component
+public class UserRequestValidator {
+    private static final String INVALID_ARGUMENT = "invalid argument";
+
+    public Map<String, String> validate(UserDataRequest dto) {
+        return validate(dto, true);
+    }
+
+    // passwordRequired == false (редактирование): без пароля в запросе текущий пароль не меняется
+    public Map<String, String> validate(UserDataRequest dto, boolean passwordRequired) {
+        Map<String, String> errors = new LinkedHashMap<>();
+
+        if (!isValidField(dto.getLogin()))
+            errors.put("login", INVALID_ARGUMENT);
+        if (!isValidField(dto.getName()))
+            errors.put("name", INVALID_ARGUMENT);
+        if ((passwordRequired || dto.getPassword() != null) && !isValidPassword(dto.getPassword()))
+            errors.put("password", INVALID_ARGUMENT);
+        if (dto.getRoles() != null && !areValidRoles(dto.getRoles()))
+            errors.put("roles", INVALID_ARGUMENT);
+
+        return errors;
+    }
+
+    //Общие для всех полей проверки: not null, длина >3, только символы из [A-z0-9]
+    public boolean isValidField(String field) {
+        if (field == null || field.length() <= 3) return false;
+        for (int i = 0; i < field.length(); i++) {
+            if (!isAllowedChar(field.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    //Дополнительно для password: есть буква в заглавном регистре и цифра
+    public boolean isValidPassword(String password) {
+        if (password == null || password.length() <= 3) return false;
+        boolean hasUpperCase = false;
+        boolean hasDigit = false;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            if (!isAllowedChar(c)) return false;
+            hasUpperCase |= c >= 'A' && c <= 'Z';
+            hasDigit |= c >= '0' && c <= '9';
+        }
+        return hasUpperCase && hasDigit;
+    }
+
+    //Имена ролей должны соответствовать enum RoleType
+    public boolean areValidRoles(List<String> roles) {
+        for (String role : roles) {
+            if (RoleType.fromName(role) == null) return false;
+        }
+        return true;
+    }
+
+    // Диапазон A-z, как и в прежнем выражении [A-z0-9], включает также символы [\]^_`
+    private static boolean isAllowedChar(char c) {
+        return (c >= 'A' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,261 @@
+package main.service;
+
+import main.repository.UserRepository;
+import main.repository.projection.UserSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Индекс поиска пользователей по login и name без учёта регистра, в памяти процесса.
+ * Все списки логинов упорядочены по login, поэтому страница читается прямо из них, начиная с курсора after:
+ * - запрос короче трёх символов - список логинов по префиксу (префиксы login и name длиной 1 и 2);
+ * - запрос от трёх символов - пересечение списков логинов по триграммам запроса (leapfrog: в каждом списке
+ *   ищется ближайший логин не меньше текущего кандидата) с проверкой подстроки у найденных, до limit совпадений.
+ * Строится при старте и обновляется по UserChangedEvent после коммита изменений пользователей.
+ * Слушатели двух изменений одного пользователя могут выполниться в обратном порядке, поэтому индекс периодически
+ * (user.search.rebuild-interval) перестраивается по БД.
+ * Изменения индекса выполняются под общей блокировкой, поиск идёт без блокировок.
+ */
+@Component
+@Profile("!reactive & !embedded")
+public class UserSearchIndex {
+    private static final int GRAM = 3;
+    private static final int LOAD_BATCH = 10000;
+    private static final int RELOAD_BATCH = 1000;
+
+    private final UserRepository userRepository;
+    private volatile Index index = new Index();
+    // Логины, изменённые во время перестроения (null - перестроение не идёт)
+    private Set<String> changedDuringRebuild;
+
+    @Autowired
+    public UserSearchIndex(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @PostConstruct
+    public void load() {
+        index = build();
+    }
+
+    // Перестроение по БД: новый индекс строится без блокировки, затем заменяет текущий. Пользователи, изменённые
+    // за время построения, перечитываются из БД (их изменения уже закоммичены, событие пришло после коммита).
+    // Запросы к БД выполняются без блокировки; пользователи, которых за время запроса изменил слушатель,
+    // уже содержат более новые данные и не перезаписываются прочитанными
+    @Scheduled(fixedDelayString = "${user.search.rebuild-interval:PT10M}",
+            initialDelayString = "${user.search.rebuild-interval:PT10M}")
+    public void rebuild() {
+        synchronized (this) {
+            changedDuringRebuild = new HashSet<>();
+        }
+        Index rebuilt = build();
+        List<String> changed;
+        synchronized (this) {
+            index = rebuilt;
+            changed = new ArrayList<>(changedDuringRebuild);
+            changedDuringRebuild = new HashSet<>();
+        }
+        try {
+            for (int from = 0; from < changed.size(); from += RELOAD_BATCH) {
+                List<String> logins = changed.subList(from, Math.min(from + RELOAD_BATCH, changed.size()));
+                List<UserSummary> users = userRepository.findSummariesByLoginIn(logins);
+                synchronized (this) {
+                    Set<String> removed = new HashSet<>(logins);
+                    removed.removeAll(changedDuringRebuild);
+                    for (UserSummary user : users) {
+                        if (removed.remove(user.getLogin()))
+                            index.put(user.getLogin(), user.getName());
+                    }
+                    for (String login : removed)
+                        index.remove(login);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                changedDuringRebuild = null;
+            }
+        }
+    }
+
+    // Загрузка всех пользователей страницами по login (проекция без паролей и ролей)
+    private Index build() {
+        Index built = new Index();
+        String after = "";
+        List<UserSummary> page;
+        do {
+            page = userRepository.findPageAfter(after, PageRequest.of(0, LOAD_BATCH));
+            for (UserSummary user : page)
+                built.put(user.getLogin(), user.getName());
+            if (!page.isEmpty())
+                after = page.get(page.size() - 1).getLogin();
+        } while (page.size() == LOAD_BATCH);
+        return built;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getOldLogin() != null)
+            remove(event.getOldLogin());
+        if (event.getNewLogin() != null)
+            put(event.getNewLogin(), event.getNewName());
+    }
+
+    public synchronized void put(String login, String name) {
+        markChanged(login);
+        index.put(login, name);
+    }
+
+    public synchronized void remove(String login) {
+        markChanged(login);
+        index.remove(login);
+    }
+
+    private void markChanged(String login) {
+        if (changedDuringRebuild != null)
+            changedDuringRebuild.add(login);
+    }
+
+    // Логины найденных пользователей по возрастанию, больше after, не более limit
+    public List<String> search(String query, String after, int limit) {
+        String normalized = query.toLowerCase(Locale.ROOT);
+        Index current = index;
+        return normalized.length() < GRAM
+                ? current.findByPrefix(normalized, after, limit)
+                : current.findBySubstring(normalized, after, limit);
+    }
+
+    public String getName(String login) {
+        return index.names.get(login);
+    }
+
+    private static class Index {
+        // login -> name
+        private final ConcurrentSkipListMap<String, String> names = new ConcurrentSkipListMap<>();
+        // префикс (1..GRAM-1 символов) или триграмма login или name -> логины по возрастанию
+        private final Map<String, NavigableSet<String>> prefixes = new ConcurrentHashMap<>();
+        private final Map<String, NavigableSet<String>> trigrams = new ConcurrentHashMap<>();
+
+        void put(String login, String name) {
+            remove(login);
+            names.put(login, name);
+            for (String prefix : prefixes(login, name))
+                prefixes.computeIfAbsent(prefix, p -> new ConcurrentSkipListSet<>()).add(login);
+            for (String gram : grams(login, name))
+                trigrams.computeIfAbsent(gram, g -> new ConcurrentSkipListSet<>()).add(login);
+        }
+
+        void remove(String login) {
+            String name = names.remove(login);
+            if (name == null)
+                return;
+            removeFrom(prefixes, prefixes(login, name), login);
+            removeFrom(trigrams, grams(login, name), login);
+        }
+
+        List<String> findByPrefix(String prefix, String after, int limit) {
+            NavigableSet<String> logins = prefixes.get(prefix);
+            List<String> page = new ArrayList<>();
+            if (logins == null)
+                return page;
+            for (String login : after == null ? logins : logins.tailSet(after, false)) {
+                if (page.size() == limit)
+                    break;
+                page.add(login);
+            }
+            return page;
+        }
+
+        List<String> findBySubstring(String substring, String after, int limit) {
+            List<NavigableSet<String>> postings = new ArrayList<>();
+            List<String> page = new ArrayList<>();
+            for (int i = 0; i + GRAM <= substring.length(); i++) {
+                NavigableSet<String> logins = trigrams.get(substring.substring(i, i + GRAM));
+                if (logins == null)
+                    return page;
+                postings.add(logins);
+            }
+            // Самый короткий список первым: он задаёт кандидатов
+            postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+            String candidate = after;
+            while (page.size() < limit && (candidate = nextCommon(postings, candidate)) != null) {
+                String name = names.get(candidate);
+                // Триграммы совпали, но могут стоять не подряд - проверяется сама подстрока
+                if (name != null && (candidate.toLowerCase(Locale.ROOT).contains(substring)
+                        || name.toLowerCase(Locale.ROOT).contains(substring)))
+                    page.add(candidate);
+            }
+            return page;
+        }
+
+        // Наименьший логин больше after (null - с начала), который есть во всех списках, или null
+        private static String nextCommon(List<NavigableSet<String>> postings, String after) {
+            String candidate = after;
+            boolean inclusive = false;
+            int agreed = 0;
+            for (int i = 0; ; i = (i + 1) % postings.size()) {
+                NavigableSet<String> logins = postings.get(i);
+                String next = candidate == null ? first(logins)
+                        : inclusive ? logins.ceiling(candidate) : logins.higher(candidate);
+                if (next == null)
+                    return null;
+                if (inclusive && next.equals(candidate)) {
+                    agreed++;
+                } else {
+                    candidate = next;
+                    inclusive = true;
+                    agreed = 1;
+                }
+                if (agreed == postings.size())
+                    return candidate;
+            }
+        }
+
+        private static String first(NavigableSet<String> logins) {
+            return logins.isEmpty() ? null : logins.first();
+        }
+
+        private static void removeFrom(Map<String, NavigableSet<String>> lists, Set<String> keys, String login) {
+            for (String key : keys) {
+                NavigableSet<String> logins = lists.get(key);
+                if (logins != null) {
+                    logins.remove(login);
+                    if (logins.isEmpty())
+                        lists.remove(key);
+                }
+            }
+        }
+
+        private static Set<String> prefixes(String login, String name) {
+            Set<String> prefixes = new HashSet<>();
+            for (String value : List.of(login.toLowerCase(Locale.ROOT), name.toLowerCase(Locale.ROOT)))
+                for (int length = 1; length < GRAM && length <= value.length(); length++)
+                    prefixes.add(value.substring(0, length));
+            return prefixes;
+        }
+
+        private static Set<String> grams(String login, String name) {
+            Set<String> grams = new HashSet<>();
+            for (String value : List.of(login.toLowerCase(Locale.ROOT), name.toLowerCase(Locale.ROOT)))
+                for (int i = 0; i + GRAM <= value.length(); i++)
+                    grams.add(value.substring(i, i + GRAM));
+            return grams;
+        }
+    }
+}
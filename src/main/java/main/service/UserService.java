@@ -4,14 +4,33 @@ import main.api.request.UserDataRequest;
 import main.api.response.ResponseAPI;
 import org.springframework.http.ResponseEntity;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface UserService {
-    ResponseEntity<ResponseAPI> createUser(UserDataRequest registerDto);
+    CompletableFuture<ResponseEntity<ResponseAPI>> createUser(UserDataRequest registerDto);
+
+    CompletableFuture<ResponseEntity<ResponseAPI>> updateUser(String login, UserDataRequest editDto, String ifMatch);
+
+    ResponseEntity<ResponseAPI> getAll(Integer limit, String after);
+
+    String getAllETag();
+
+    ResponseEntity<ResponseAPI> getAllByRole(String role, Integer limit, String after);
 
-    ResponseEntity<ResponseAPI> updateUser(String login, UserDataRequest editDto);
+    String getAllByRoleETag(String role);
 
-    ResponseEntity<ResponseAPI> getAll();
+    ResponseEntity<ResponseAPI> getStats();
+
+    ResponseEntity<ResponseAPI> search(String query, Integer limit, String after);
 
     ResponseEntity<ResponseAPI> getUser(String login);
 
+    String getUserETag(String login);
+
     ResponseEntity<ResponseAPI> deleteUser(String login);
+
+    CompletableFuture<ResponseEntity<ResponseAPI>> importUsers(List<UserDataRequest> users);
+
+    CompletableFuture<ResponseEntity<ResponseAPI>> verifyPassword(String login, String password);
 }
@@ -5,168 +5,489 @@ import main.api.response.BooleanResponseDTO;
 import main.api.response.ResponseAPI;
 import main.api.response.UserDTO;
 import main.api.response.UserListResponse;
+import main.api.response.UserStatsResponse;
+import main.datasource.ReadRouting;
+import main.metrics.UserMetrics;
 import main.model.Role;
 import main.model.User;
 import main.model.enums.RoleType;
-import main.repository.RoleRepository;
 import main.repository.UserRepository;
+import main.repository.projection.UserSummary;
+import main.repository.projection.UserVersion;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 @Service
+@Profile("!reactive & !embedded")
 @Transactional
 public class UserServiceImpl implements UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Логинов в одном IN-запросе проверки занятых логинов при импорте
+    private static final int LOGIN_CHECK_BATCH = 1000;
+
     private UserRepository userRepository;
-    private RoleRepository roleRepository;
+    private RoleRegistry roleRegistry;
+    private UserRequestValidator validator;
+    private UserCache userCache;
+    private UserSearchIndex searchIndex;
+    private RoleMembershipIndex roleMembershipIndex;
+    private UserCounters counters;
+    private UserCreateBatcher createBatcher;
+    private PasswordHasher passwordHasher;
+    private UserMetrics metrics;
+    private ApplicationEventPublisher eventPublisher;
+    private Executor taskExecutor;
+    private TransactionTemplate transaction;
+    private TransactionTemplate readOnlyTransaction;
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, RoleRepository roleRepository) {
+    public UserServiceImpl(UserRepository userRepository,
+                           RoleRegistry roleRegistry,
+                           UserRequestValidator validator,
+                           UserCache userCache,
+                           UserSearchIndex searchIndex,
+                           RoleMembershipIndex roleMembershipIndex,
+                           UserCounters counters,
+                           ObjectProvider<UserCreateBatcher> createBatcher,
+                           PasswordHasher passwordHasher,
+                           UserMetrics metrics,
+                           ApplicationEventPublisher eventPublisher,
+                           @Qualifier("applicationTaskExecutor") Executor taskExecutor,
+                           PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
-        this.roleRepository = roleRepository;
+        this.roleRegistry = roleRegistry;
+        this.validator = validator;
+        this.userCache = userCache;
+        this.searchIndex = searchIndex;
+        this.roleMembershipIndex = roleMembershipIndex;
+        this.counters = counters;
+        this.createBatcher = createBatcher.getIfAvailable();
+        this.passwordHasher = passwordHasher;
+        this.metrics = metrics;
+        this.eventPublisher = eventPublisher;
+        this.taskExecutor = taskExecutor;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
+    // Пароль хешируется на пуле PasswordHasher, запись в БД выполняется после этого на applicationTaskExecutor.
+    // Вставка выполняется в собственной транзакции репозитория: при нарушении уникальности логина
+    // она откатывается, а занятый логин возвращается как ошибка запроса
     @Override
-    public ResponseEntity<ResponseAPI> createUser(UserDataRequest registerDto) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<ResponseEntity<ResponseAPI>> createUser(UserDataRequest registerDto) {
         // Проверка пришедших значений на ошибки
-        Map<String, String> errors = checkErrors(registerDto);  //проверка полей запроса на ошибки
-        if (userRepository.findById(registerDto.getLogin()).isPresent()) //проверка в БД занят ли логин
-            errors.put("login", "login already exists");
+        Map<String, String> errors = validator.validate(registerDto);  //проверка полей запроса на ошибки
+        metrics.validationFailed(errors);
         if (errors.size() > 0)
-            return new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK);
+            return CompletableFuture.completedFuture(new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK));
 
-        // Найти переданные роли в БД
-        List<Role> rolesFromDB = null;
-        if (registerDto.getRoles() != null) {
-            rolesFromDB = new ArrayList<>();
-            for (String role : registerDto.getRoles()) {
-                rolesFromDB.add(roleRepository.findByName(role).orElseThrow());
-            }
+        Set<Role> roles = findRoles(registerDto.getRoles());
+        CompletableFuture<User> newUser = passwordHasher.hash(registerDto.getPassword())
+                .thenApply(passwordHash -> new User(registerDto.getLogin(), registerDto.getName(), passwordHash, roles));
+        // С user.create-batch.enabled вставка выполняется пачкой вместе с другими созданиями (UserCreateBatcher)
+        if (createBatcher != null)
+            return newUser.thenCompose(user -> createBatcher.insert(user)
+                    .thenApplyAsync(tableVersion -> createdResponse(user, tableVersion), taskExecutor));
+        return newUser.thenApplyAsync(this::insertUser, taskExecutor);
+    }
+
+    private ResponseEntity<ResponseAPI> insertUser(User user) {
+        // Занятость логина проверяется ограничением уникальности, а не предварительным select
+        long tableVersion;
+        try {
+            tableVersion = userRepository.insert(user);
+        } catch (DataIntegrityViolationException e) {
+            if (!userRepository.existsByLogin(user.getLogin()))
+                throw e;
+            return createdResponse(user, OptionalLong.empty());
         }
+        return createdResponse(user, OptionalLong.of(tableVersion));
+    }
 
-        User user = new User(
-                registerDto.getLogin(),
-                registerDto.getName(),
-                registerDto.getPassword(),
-                rolesFromDB);
-        userRepository.save(user);
+    // tableVersion - счётчик изменений таблицы users, записанный вставкой; пустой - логин уже занят
+    private ResponseEntity<ResponseAPI> createdResponse(User user, OptionalLong tableVersion) {
+        if (tableVersion.isEmpty()) {
+            metrics.loginConflict();
+            Map<String, String> errors = new LinkedHashMap<>();
+            errors.put("login", "login already exists");
+            return new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK);
+        }
+        publishCreated(user, tableVersion.getAsLong());
 
         return new ResponseEntity<>(new BooleanResponseDTO(true), HttpStatus.OK);
     }
 
+    // Пароль не обязателен: без него текущий хеш сохраняется без хеширования, переданный пароль хешируется всегда
+    // (по хешу BCrypt с солью нельзя дёшево узнать, что пароль не изменился - проверка стоит как хеширование).
+    // Изменения записываются в отдельной транзакции после хеширования.
+    // ifMatch - заголовок If-Match: изменение выполняется, только если ETag пользователя не изменился (иначе 412)
     @Override
-    public ResponseEntity<ResponseAPI> updateUser(String login, UserDataRequest editDto) {
-        // Найти редактируемого User в БД по login или ответ со статусом 404
-        User userFromDB = userRepository.findById(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<ResponseEntity<ResponseAPI>> updateUser(String login, UserDataRequest editDto, String ifMatch) {
+        // Найти хеш пароля редактируемого User в БД по login или ответ со статусом 404
+        String currentPasswordHash = userRepository.findPasswordByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
         // Проверка пришедших значений на ошибки
-        Map<String, String> errors = checkErrors(editDto);  //проверка полей запроса на ошибки
-        // В случае изменения логина удалить старую запись из БД и работать с новым User
-        if (!login.equals(editDto.getLogin())) {
-            if (userRepository.findById(editDto.getLogin()).isPresent()) //проверка в БД занят ли логин
-                errors.put("login", "login already exists");
-            else {
-                userRepository.delete(userFromDB);
-                userFromDB = new User();
-            }
+        Map<String, String> errors = validator.validate(editDto, false);  //проверка полей запроса на ошибки
+        metrics.validationFailed(errors);
+        // Смена логина - обычный update строки: id пользователя и его связи в user2role не меняются
+        if (!login.equals(editDto.getLogin()) && userRepository.existsByLogin(editDto.getLogin())) { //проверка в БД занят ли логин
+            metrics.loginConflict();
+            errors.put("login", "login already exists");
         }
 
         if (errors.size() > 0)
-            return new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK);
+            return CompletableFuture.completedFuture(new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK));
 
-        // Найти переданные роли в БД
-        List<Role> rolesFromDB = null;
-        if (editDto.getRoles() != null) {
-            rolesFromDB = new ArrayList<>();
-            for (String role : editDto.getRoles()) {
-                rolesFromDB.add(roleRepository.findByName(role).orElseThrow());
-            }
+        Set<Role> roles = findRoles(editDto.getRoles());
+        CompletableFuture<String> newPasswordHash = editDto.getPassword() == null
+                ? CompletableFuture.completedFuture(currentPasswordHash)
+                : passwordHasher.hash(editDto.getPassword());
+        return newPasswordHash.thenApplyAsync(passwordHash -> saveUser(login, editDto, passwordHash, roles, ifMatch), taskExecutor);
+    }
+
+    // Строка users обновляется с проверкой версии (@Version): если пользователя изменил параллельный запрос
+    // между чтением и записью, изменение не выполняется - 412 при If-Match, иначе 409
+    private ResponseEntity<ResponseAPI> saveUser(String login, UserDataRequest editDto, String passwordHash,
+                                                 Set<Role> roles, String ifMatch) {
+        User user;
+        try {
+            user = transaction.execute(status -> {
+                User userFromDB = userRepository.findByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+                if (ifMatch != null && !ETags.matches(ifMatch, ETags.forUser(userFromDB.getId(), userFromDB.getVersion())))
+                    throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+                boolean changed = !Objects.equals(userFromDB.getLogin(), editDto.getLogin())
+                        || !Objects.equals(userFromDB.getName(), editDto.getName())
+                        || !Objects.equals(userFromDB.getPassword(), passwordHash);
+                //Редактирование и сохранение User
+                userFromDB.setLogin(editDto.getLogin());
+                userFromDB.setName(editDto.getName());
+                userFromDB.setPassword(passwordHash);
+                changed |= updateRoles(userFromDB, roles);
+                userRepository.save(userFromDB);
+                long tableVersion = changed ? userRepository.incrementTableVersion() : 0;
+                eventPublisher.publishEvent(new UserChangedEvent(login, userFromDB.getLogin(), userFromDB.getName(),
+                        UserMapper.toRoleTypes(userFromDB.getRoles()), tableVersion));
+                return userFromDB;
+            });
+        } catch (OptimisticLockingFailureException e) {
+            if (ifMatch != null)
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+            throw e;
         }
+        // Версия увеличена при flush, ответ содержит новый ETag пользователя
+        return ResponseEntity.ok()
+                .eTag(ETags.forUser(user.getId(), user.getVersion()))
+                .body(new BooleanResponseDTO(true));
+    }
 
-        //Редактирование и сохранение User
-        userFromDB.setLogin(editDto.getLogin());
-        userFromDB.setName(editDto.getName());
-        userFromDB.setPassword(editDto.getPassword());
-        userFromDB.setRoles(rolesFromDB);
-        userRepository.save(userFromDB);
+    @Override
+    @Transactional(readOnly = true)
+    public ResponseEntity<ResponseAPI> getAll(Integer limit, String after) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("limit must be positive");
 
-        return new ResponseEntity<>(new BooleanResponseDTO(true), HttpStatus.OK);
+        // Счётчик изменений читается до страницы: если страница уже содержит более новые данные,
+        // клиент при следующей проверке If-None-Match просто получит её заново
+        String etag = ETags.forUserList(userRepository.getTableVersion());
+        // Запрашивается на одну запись больше, чтобы без count-запроса узнать, есть ли следующая страница
+        List<UserSummary> page = userRepository.findPageAfter(after == null ? "" : after, PageRequest.of(0, pageSize + 1));
+        boolean hasNext = page.size() > pageSize;
+        List<UserDTO> userDtoList = new ArrayList<>(Math.min(page.size(), pageSize));
+        for (UserSummary user : hasNext ? page.subList(0, pageSize) : page)
+            userDtoList.add(UserMapper.toDto(user));
+        String nextCursor = hasNext ? userDtoList.get(pageSize - 1).getLogin() : null;
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .body(new UserListResponse(userDtoList.size(), userDtoList, nextCursor));
     }
 
+    // ETag списка пользователей: только счётчик изменений таблицы users
     @Override
-    public ResponseEntity<ResponseAPI> getAll() {
-        List<UserDTO> userDtoList = userRepository.findAll()
-                .stream()
-                .map(user -> {
-                    UserDTO dto = new UserDTO();
-                    dto.setLogin(user.getLogin());
-                    dto.setName(user.getName());
-                    return dto;
-                })
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(new UserListResponse(userDtoList.size(), userDtoList), HttpStatus.OK);
+    @Transactional(readOnly = true)
+    public String getAllETag() {
+        return ETags.forUserList(userRepository.getTableVersion());
+    }
+
+    // Пользователи роли из RoleMembershipIndex, без обращения к user2role.
+    // Постраничная выдача как у getAll; ETag - версия индекса, прочитанная до страницы
+    @Override
+    @Transactional(readOnly = true)
+    public ResponseEntity<ResponseAPI> getAllByRole(String role, Integer limit, String after) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("limit must be positive");
+        RoleType roleType = roleType(role);
+
+        String etag = roleMembershipIndex.getETag();
+        List<Map.Entry<String, String>> page = roleMembershipIndex.findPage(roleType, after, pageSize + 1);
+        boolean hasNext = page.size() > pageSize;
+        List<UserDTO> userDtoList = new ArrayList<>(Math.min(page.size(), pageSize));
+        for (Map.Entry<String, String> user : hasNext ? page.subList(0, pageSize) : page) {
+            UserDTO dto = new UserDTO();
+            dto.setLogin(user.getKey());
+            dto.setName(user.getValue());
+            userDtoList.add(dto);
+        }
+        String nextCursor = hasNext ? userDtoList.get(pageSize - 1).getLogin() : null;
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .body(new UserListResponse(userDtoList.size(), userDtoList, nextCursor));
+    }
+
+    @Override
+    public String getAllByRoleETag(String role) {
+        roleType(role);
+        return roleMembershipIndex.getETag();
+    }
+
+    private static RoleType roleType(String role) {
+        RoleType roleType = RoleType.fromName(role);
+        if (roleType == null)
+            throw new IllegalArgumentException("unknown role");
+        return roleType;
+    }
+
+    // Число пользователей, всего и по ролям, из UserCounters без обращения к БД
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ResponseEntity<ResponseAPI> getStats() {
+        return new ResponseEntity<>(new UserStatsResponse(counters.getTotal(), counters.getRoleCounts()), HttpStatus.OK);
+    }
+
+    // Поиск по login и name в индексе UserSearchIndex, без обращения к БД.
+    // Постраничная выдача как у getAll: limit и after - login последнего пользователя предыдущей страницы
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public ResponseEntity<ResponseAPI> search(String query, Integer limit, String after) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("limit must be positive");
+        if (query == null || query.isEmpty())
+            throw new IllegalArgumentException("query must not be empty");
+
+        List<String> page = searchIndex.search(query, after, pageSize + 1);
+        boolean hasNext = page.size() > pageSize;
+        List<UserDTO> userDtoList = new ArrayList<>(Math.min(page.size(), pageSize));
+        for (String login : hasNext ? page.subList(0, pageSize) : page) {
+            UserDTO dto = new UserDTO();
+            dto.setLogin(login);
+            dto.setName(searchIndex.getName(login));
+            userDtoList.add(dto);
+        }
+        String nextCursor = hasNext ? userDtoList.get(pageSize - 1).getLogin() : null;
+        return new ResponseEntity<>(new UserListResponse(userDtoList.size(), userDtoList, nextCursor), HttpStatus.OK);
     }
 
+    // Транзакция открывается только при промахе кэша
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public ResponseEntity<ResponseAPI> getUser(String login) {
-        // Найти редактируемого User в БД по login или ответ со статусом 404
-        User user = userRepository.findById(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        UserDTO dto = new UserDTO();
-        dto.setLogin(user.getLogin());
-        dto.setName(user.getName());
-        dto.setRoles(user.getRoles()
-                .stream()
-                .map(role -> role.getName())
-                .collect(Collectors.toList())
-        );
-        return new ResponseEntity<>(dto, HttpStatus.OK);
+        return userCache.get(login, this::loadUser);
+    }
+
+    // ETag пользователя одним запросом id и версии, без загрузки пользователя и ролей
+    @Override
+    @Transactional(readOnly = true)
+    public String getUserETag(String login) {
+        UserVersion version = userRepository.findVersionByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return ETags.forUser(version.getId(), version.getVersion());
     }
 
     @Override
     public ResponseEntity<ResponseAPI> deleteUser(String login) {
-        userRepository.deleteByLogin(login);
+        // Событие только при удалении: по нему уменьшается число пользователей в UserCounters
+        if (userRepository.deleteByLogin(login) > 0) {
+            long tableVersion = userRepository.incrementTableVersion();
+            eventPublisher.publishEvent(new UserChangedEvent(login, null, null, null, tableVersion));
+        }
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
-    private Map<String, String> checkErrors(UserDataRequest dto) {
-        List<String> roles = dto.getRoles();
+    // Массовый импорт: проверка записей параллельно, проверка занятых логинов IN-запросами по LOGIN_CHECK_BATCH,
+    // хеширование паролей на пуле PasswordHasher, вставка пачками.
+    // Ошибки возвращаются по каждой записи с ключом "<номер записи>.<поле>"
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<ResponseEntity<ResponseAPI>> importUsers(List<UserDataRequest> users) {
+        List<Map<String, String>> recordErrors = users.parallelStream()
+                .map(validator::validate)
+                .collect(Collectors.toList());
+
+        List<String> logins = users.stream()
+                .map(UserDataRequest::getLogin)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        Set<String> takenLogins = findExistingLogins(logins);
+
         Map<String, String> errors = new LinkedHashMap<>();
+        List<User> newUsers = new ArrayList<>();
+        List<Integer> newUserRecords = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            UserDataRequest dto = users.get(i);
+            Map<String, String> userErrors = recordErrors.get(i);
+            metrics.validationFailed(userErrors);
+            // Логин занят в БД или встречался раньше в этом же импорте
+            if (dto.getLogin() != null && !takenLogins.add(dto.getLogin())) {
+                metrics.loginConflict();
+                userErrors.put("login", "login already exists");
+            }
+            if (userErrors.size() > 0) {
+                for (Map.Entry<String, String> error : userErrors.entrySet())
+                    errors.put(i + "." + error.getKey(), error.getValue());
+                continue;
+            }
+            newUsers.add(new User(dto.getLogin(), dto.getName(), dto.getPassword(), findRoles(dto.getRoles())));
+            newUserRecords.add(i);
+        }
 
-        if (!checkStringField(dto.getLogin()))
-            errors.put("login", "invalid argument");
-        if (!checkStringField(dto.getName()))
-            errors.put("name", "invalid argument");
-        if (!checkStringField(dto.getPassword())
-                || !dto.getPassword().matches(".*[A-Z]+.*")
-                || !dto.getPassword().matches(".*\\d+.*"))
-            errors.put("password", "invalid argument");
-        //для проверки соответствия переданных имён ролей с существующими enum RoleType
-        if (roles != null) {
-            try {
-                for (String role : roles) {
-                    RoleType.valueOf(role);
+        List<String> passwords = newUsers.stream().map(User::getPassword).collect(Collectors.toList());
+        return passwordHasher.hashAll(passwords)
+                .thenApplyAsync(passwordHashes -> {
+                    for (int i = 0; i < newUsers.size(); i++)
+                        newUsers.get(i).setPassword(passwordHashes.get(i));
+                    insertAll(newUsers, newUserRecords, errors);
+
+                    if (errors.size() > 0)
+                        return new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK);
+                    return new ResponseEntity<>(new BooleanResponseDTO(true), HttpStatus.OK);
+                }, taskExecutor);
+    }
+
+    // Вставка импортированных пользователей. Если логин занят параллельным запросом после проверки, пачка
+    // откатывается: занятые логины проверяются заново и возвращаются как ошибки записей (records - номера записей
+    // импорта), остальные вставляются повторно, а при новом конфликте - по одной. О каждом вставленном
+    // публикуется UserChangedEvent
+    private void insertAll(List<User> users, List<Integer> records, Map<String, String> errors) {
+        try {
+            long tableVersion = userRepository.insertAll(users);
+            users.forEach(user -> publishCreated(user, tableVersion));
+        } catch (DataIntegrityViolationException e) {
+            Set<String> takenLogins = findExistingLogins(users.stream().map(User::getLogin).collect(Collectors.toList()));
+            List<User> retryUsers = new ArrayList<>();
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                // id и роли, присвоенные в откатившейся пачке, недействительны
+                user.setId(null);
+                if (takenLogins.contains(user.getLogin())) {
+                    metrics.loginConflict();
+                    errors.put(records.get(i) + ".login", "login already exists");
+                } else {
+                    retryUsers.add(user);
                 }
-            } catch (IllegalArgumentException e) {
-                errors.put("roles", "invalid argument");
+            }
+            try {
+                long tableVersion = userRepository.insertAll(retryUsers);
+                retryUsers.forEach(user -> publishCreated(user, tableVersion));
+            } catch (DataIntegrityViolationException retryFailed) {
+                insertEach(users, records, errors);
             }
         }
+    }
+
+    private void insertEach(List<User> users, List<Integer> records, Map<String, String> errors) {
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (errors.containsKey(records.get(i) + ".login"))
+                continue;
+            user.setId(null);
+            try {
+                publishCreated(user, userRepository.insert(user));
+            } catch (DataIntegrityViolationException e) {
+                if (!userRepository.existsByLogin(user.getLogin()))
+                    throw e;
+                metrics.loginConflict();
+                errors.put(records.get(i) + ".login", "login already exists");
+            }
+        }
+    }
+
+    private void publishCreated(User user, long tableVersion) {
+        eventPublisher.publishEvent(new UserChangedEvent(null, user.getLogin(), user.getName(),
+                UserMapper.toRoleTypes(user.getRoles()), tableVersion));
+    }
+
+    // Занятые логины IN-запросами по LOGIN_CHECK_BATCH
+    private Set<String> findExistingLogins(List<String> logins) {
+        Set<String> takenLogins = new HashSet<>();
+        for (int from = 0; from < logins.size(); from += LOGIN_CHECK_BATCH)
+            takenLogins.addAll(userRepository.findExistingLogins(
+                    logins.subList(from, Math.min(from + LOGIN_CHECK_BATCH, logins.size()))));
+        return takenLogins;
+    }
 
-        return errors;
+    // Проверка пароля пользователя на том же пуле PasswordHasher
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<ResponseEntity<ResponseAPI>> verifyPassword(String login, String password) {
+        String passwordHash = userRepository.findPasswordByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        if (password == null)
+            return CompletableFuture.completedFuture(new ResponseEntity<>(new BooleanResponseDTO(false), HttpStatus.OK));
+        return passwordHasher.matches(password, passwordHash)
+                .thenApply(matches -> new ResponseEntity<>(new BooleanResponseDTO(matches), HttpStatus.OK));
+    }
+
+    // Найти переданные роли в справочнике
+    private Set<Role> findRoles(List<String> roleNames) {
+        Set<Role> roles = new HashSet<>();
+        if (roleNames != null) {
+            for (String role : roleNames) {
+                roles.add(roleRegistry.find(role).orElseThrow());
+            }
+        }
+        return roles;
+    }
+
+    // Роли меняются по разнице множеств в той же коллекции, а не заменой коллекции:
+    // неизменный набор ролей не приводит ни к одной записи в user2role
+    private boolean updateRoles(User user, Set<Role> roles) {
+        if (user.getRoles() == null) {
+            user.setRoles(roles);
+            return !roles.isEmpty();
+        }
+        boolean removed = user.getRoles().retainAll(roles);
+        boolean added = user.getRoles().addAll(roles);
+        return removed || added;
     }
 
-    //Общие для всех полей проверки
-    private boolean checkStringField(String field) {
-        if (field == null) return false;
-        if (field.length() <= 3) return false;
-        return field.replaceAll("[A-z0-9]+", "").length() <= 0;
+    // Промах кэша читается с основной БД: после сброса записи кэш не должен заполниться отстающими данными реплики
+    private ResponseEntity<ResponseAPI> loadUser(String login) {
+        return ReadRouting.onPrimary(() -> readOnlyTransaction.execute(status -> {
+            // Найти User вместе с ролями в БД по login или ответ со статусом 404
+            User user = userRepository.findWithRolesByLogin(login).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+            return ResponseEntity.ok()
+                    .eTag(ETags.forUser(user.getId(), user.getVersion()))
+                    .body(UserMapper.toDtoWithRoles(user));
+        }));
     }
 }
@@ -0,0 +1,28 @@
+-- Исходная схема (прежний database-init/schema.sql) в синтаксисе H2
+CREATE TABLE users (
+  login varchar(255) NOT NULL,
+  name varchar(255) NOT NULL,
+  password varchar(255) NOT NULL,
+  PRIMARY KEY (login)
+);
+
+CREATE TABLE roles (
+  id int NOT NULL AUTO_INCREMENT,
+  name varchar(255) NOT NULL,
+  PRIMARY KEY (id),
+  CONSTRAINT UK_role_name UNIQUE (name)
+);
+
+CREATE TABLE user2role (
+  user_id varchar(255) NOT NULL,
+  role_id int NOT NULL,
+  CONSTRAINT FK_user_id FOREIGN KEY (user_id) REFERENCES users (login),
+  CONSTRAINT FK_role_id FOREIGN KEY (role_id) REFERENCES roles (id)
+);
+CREATE INDEX FKxev9jpfj2u0dkxofnqyevkt2 ON user2role (role_id);
+CREATE INDEX FKjt3q42fm2pedw690p8kkdryq6 ON user2role (user_id);
+
+INSERT INTO roles (name) VALUES
+('USER'),
+('MODERATOR'),
+('OPERATOR');
@@ -0,0 +1,35 @@
+-- Суррогатный ключ пользователей: id вместо login в users и user2role, версия строки,
+-- счётчик изменений таблицы users. Существующие пользователи получают id по порядку, связи с ролями
+-- переносятся на id (повторяющиеся связи схлопываются составным ключом)
+CREATE TABLE user2role_new (
+  user_id bigint NOT NULL,
+  role_id int NOT NULL,
+  PRIMARY KEY (user_id, role_id)
+);
+
+ALTER TABLE users ADD COLUMN id bigint NOT NULL AUTO_INCREMENT FIRST;
+ALTER TABLE users ADD COLUMN version bigint NOT NULL DEFAULT 0;
+
+INSERT INTO user2role_new (user_id, role_id)
+SELECT DISTINCT u.id, ur.role_id FROM user2role ur JOIN users u ON u.login = ur.user_id;
+
+DROP TABLE user2role;
+
+ALTER TABLE users DROP PRIMARY KEY;
+ALTER TABLE users ADD PRIMARY KEY (id);
+ALTER TABLE users ADD CONSTRAINT UK_user_login UNIQUE (login);
+
+ALTER TABLE user2role_new RENAME TO user2role;
+ALTER TABLE user2role ADD CONSTRAINT FK_user_id FOREIGN KEY (user_id) REFERENCES users (id);
+ALTER TABLE user2role ADD CONSTRAINT FK_role_id FOREIGN KEY (role_id) REFERENCES roles (id);
+-- Индекс (role_id, user_id): пользователи роли выбираются только по индексу, без чтения строк user2role
+CREATE INDEX IDX_user2role_role_user ON user2role (role_id, user_id);
+
+-- Счётчик изменений таблицы (ETag списка пользователей)
+CREATE TABLE table_versions (
+  name varchar(64) NOT NULL,
+  version bigint NOT NULL,
+  PRIMARY KEY (name)
+);
+
+INSERT INTO table_versions (name, version) SELECT 'users', COUNT(*) FROM users;
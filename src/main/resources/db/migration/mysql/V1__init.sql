@@ -1,7 +1,4 @@
-DROP DATABASE IF EXISTS test_task;
-CREATE DATABASE test_task;
-use test_task;
-
+-- Исходная схема (прежний database-init/schema.sql без пересоздания базы)
 CREATE TABLE `users` (
   `login` varchar(255) NOT NULL,
   `name` varchar(255) NOT NULL,
@@ -28,4 +25,4 @@ CREATE TABLE `user2role` (
 INSERT INTO roles (name) VALUES
 ("USER"),
 ("MODERATOR"),
-("OPERATOR");
\ No newline at end of file
+("OPERATOR");
@@ -0,0 +1,89 @@
+package main.controller;
+
+import main.repository.embedded.EmbeddedUserStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Встроенное хранилище (профиль embedded) без БД:
+ * 1. создание, получение с ролями, переименование с If-Match, список роли, поиск и удаление
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "user.embedded.directory=target/embedded-user-store-test")
+@AutoConfigureMockMvc
+@ActiveProfiles("embedded")
+public class EmbeddedUserControllerTest {
+    private static final String CREATE_REQUEST = "{\"login\":\"firstUser\",\"name\":\"name\",\"password\":\"abcD1\",\"roles\":[\"USER\"]}";
+    private static final String EDIT_REQUEST = "{\"login\":\"renamedUser\",\"name\":\"name\",\"password\":\"abcD1\",\"roles\":[\"MODERATOR\"]}";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EmbeddedUserStore store;
+
+    @Before
+    public void clearUsers() {
+        store.deleteByLogin("firstUser");
+        store.deleteByLogin("renamedUser");
+    }
+
+    // 1. создание, получение с ролями, переименование с If-Match, список роли, поиск и удаление
+    @Test
+    public void createUpdateAndDeleteUser() throws Exception {
+        perform(post("/user/add/").contentType(MediaType.APPLICATION_JSON).content(CREATE_REQUEST))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"success\":true}"));
+        perform(post("/user/add/").contentType(MediaType.APPLICATION_JSON).content(CREATE_REQUEST))
+                .andExpect(jsonPath("$.errors.login").value("login already exists"));
+
+        String etag = mockMvc.perform(get("/user/firstUser"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"login\":\"firstUser\",\"name\":\"name\",\"roles\":[\"USER\"]}"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        perform(put("/user/firstUser").contentType(MediaType.APPLICATION_JSON).content(EDIT_REQUEST)
+                .header(HttpHeaders.IF_MATCH, "\"0-0\""))
+                .andExpect(status().isPreconditionFailed());
+        perform(put("/user/firstUser").contentType(MediaType.APPLICATION_JSON).content(EDIT_REQUEST)
+                .header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/user/").param("role", "MODERATOR"))
+                .andExpect(jsonPath("$.users[*].login").value(contains("renamedUser")));
+        mockMvc.perform(get("/user/search").param("q", "renamed"))
+                .andExpect(jsonPath("$.users[*].login").value(contains("renamedUser")));
+
+        mockMvc.perform(delete("/user/renamedUser"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/user/renamedUser"))
+                .andExpect(status().isNotFound());
+    }
+
+    // Запрос к асинхронному методу контроллера (CompletableFuture)
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
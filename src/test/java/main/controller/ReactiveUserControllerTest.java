@@ -0,0 +1,184 @@
+package main.controller;
+
+import main.api.request.UserDataRequest;
+import main.model.reactive.UserRecord;
+import main.repository.reactive.UserReactiveRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+/**
+ * Реактивный вариант (профиль reactive) на встроенной H2 через r2dbc-h2:
+ * 1. создание пользователя, получение его с ролями, изменение ролей и список пользователей роли
+ * 2. занятый логин и некорректные поля возвращают ошибки в том же формате, что и основной вариант
+ * 3. постраничный список, проверка пароля, удаление и 404 для удалённого пользователя
+ * 4. поиск и статистика по тем же адресам, что и в основном варианте
+ * 5. изменение без новых значений ничего не записывает, изменение по устаревшей версии строки не выполняется
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles({"reactive", "h2"})
+public class ReactiveUserControllerTest {
+    @Autowired
+    private WebTestClient webClient;
+    @Autowired
+    private DatabaseClient databaseClient;
+    @Autowired
+    private UserReactiveRepository userRepository;
+
+    @Before
+    public void clearUsers() {
+        databaseClient.execute("DELETE FROM user2role").then()
+                .then(databaseClient.execute("DELETE FROM users").then())
+                .block();
+    }
+
+    // 1. создание пользователя, получение его с ролями, изменение ролей и список пользователей роли
+    @Test
+    public void createGetAndUpdateUser() {
+        addUser("firstUser", List.of("USER", "OPERATOR"))
+                .expectStatus().isOk()
+                .expectBody().json("{\"success\":true}");
+
+        webClient.get().uri("/user/firstUser").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"login\":\"firstUser\",\"name\":\"name\",\"roles\":[\"USER\",\"OPERATOR\"]}");
+
+        webClient.put().uri("/user/firstUser").bodyValue(request("renamedUser", List.of("MODERATOR", "OPERATOR"))).exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"success\":true}");
+
+        webClient.get().uri("/user/renamedUser").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"login\":\"renamedUser\",\"roles\":[\"MODERATOR\",\"OPERATOR\"]}");
+        webClient.get().uri("/user/?role=MODERATOR").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"count\":1,\"users\":[{\"login\":\"renamedUser\"}]}");
+        webClient.get().uri("/user/?role=USER").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"count\":0}");
+        webClient.get().uri("/user/firstUser").exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // 2. занятый логин и некорректные поля возвращают ошибки в том же формате, что и основной вариант
+    @Test
+    public void createUser_ShouldReturnErrors() {
+        addUser("firstUser", List.of("USER")).expectStatus().isOk();
+
+        addUser("firstUser", List.of("USER"))
+                .expectStatus().isOk()
+                .expectBody().json("{\"success\":false,\"errors\":{\"login\":\"login already exists\"}}");
+        addUser("ab", List.of("UNKNOWN"))
+                .expectStatus().isOk()
+                .expectBody().json("{\"success\":false,\"errors\":{\"login\":\"invalid argument\",\"roles\":\"invalid argument\"}}");
+    }
+
+    // 3. постраничный список, проверка пароля, удаление и 404 для удалённого пользователя
+    @Test
+    public void pageVerifyAndDeleteUsers() {
+        webClient.post().uri("/user/import/").contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .bodyValue("{\"login\":\"firstUser\",\"name\":\"name\",\"password\":\"abcD1\",\"roles\":[\"USER\"]}\n" +
+                        "{\"login\":\"secondUser\",\"name\":\"name\",\"password\":\"abcD1\"}\n" +
+                        "{\"login\":\"thirdUser\",\"name\":\"name\",\"password\":\"abcD1\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"success\":true}");
+
+        webClient.get().uri("/user/?limit=2").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"count\":2,\"users\":[{\"login\":\"firstUser\"},{\"login\":\"secondUser\"}],\"nextCursor\":\"secondUser\"}");
+        webClient.get().uri("/user/?limit=2&after=secondUser").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"count\":1,\"users\":[{\"login\":\"thirdUser\"}]}")
+                .jsonPath("$.nextCursor").doesNotExist();
+
+        webClient.post().uri("/user/firstUser/verify").bodyValue(request("firstUser", null)).exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"success\":true}");
+
+        webClient.delete().uri("/user/firstUser").exchange()
+                .expectStatus().isOk();
+        webClient.get().uri("/user/firstUser").exchange()
+                .expectStatus().isNotFound();
+        webClient.get().uri("/user/?limit=0").exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    // 4. поиск и статистика по тем же адресам, что и в основном варианте
+    @Test
+    public void searchAndStats() {
+        addUser("alice1", List.of("USER")).expectStatus().isOk();
+        addUser("bob22", List.of("USER", "OPERATOR")).expectStatus().isOk();
+        addUser("robin4", List.of()).expectStatus().isOk();
+
+        webClient.get().uri("/user/search?q=RO").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"count\":1,\"users\":[{\"login\":\"robin4\"}]}");
+        webClient.get().uri("/user/search?q=b22").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"count\":1,\"users\":[{\"login\":\"bob22\"}]}");
+        webClient.get().uri("/user/search?q=_").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"count\":0}");
+
+        webClient.get().uri("/user/stats").exchange()
+                .expectStatus().isOk()
+                .expectBody().json("{\"total\":3,\"roles\":{\"USER\":2,\"OPERATOR\":1,\"MODERATOR\":0}}");
+    }
+
+    // 5. изменение без новых значений ничего не записывает, изменение по устаревшей версии строки не выполняется
+    @Test
+    public void updateUser_ShouldCheckVersion() {
+        addUser("firstUser", List.of("USER")).expectStatus().isOk();
+        UserDataRequest unchanged = request("firstUser", List.of("USER"));
+        unchanged.setPassword(null);
+        long tableVersion = tableVersion();
+
+        webClient.put().uri("/user/firstUser").bodyValue(unchanged).exchange()
+                .expectStatus().isOk();
+        UserRecord user = userRepository.findByLogin("firstUser").block();
+        Assert.assertEquals(Long.valueOf(0), user.getVersion());
+        Assert.assertEquals(tableVersion, tableVersion());
+
+        webClient.put().uri("/user/firstUser").bodyValue(request("firstUser", List.of("OPERATOR"))).exchange()
+                .expectStatus().isOk();
+        Assert.assertEquals(Long.valueOf(1), userRepository.findByLogin("firstUser").block().getVersion());
+        Assert.assertEquals(tableVersion + 1, tableVersion());
+
+        // Запрос, прочитавший строку до предыдущего изменения
+        Assert.assertEquals(Integer.valueOf(0), userRepository.updateIfVersion(user.getId(), user.getVersion(),
+                "firstUser", "other", user.getPassword()).block());
+    }
+
+    private long tableVersion() {
+        return databaseClient.execute("SELECT version FROM table_versions WHERE name = 'users'")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block();
+    }
+
+    private WebTestClient.ResponseSpec addUser(String login, List<String> roles) {
+        return webClient.post().uri("/user/add/").bodyValue(request(login, roles)).exchange();
+    }
+
+    private static UserDataRequest request(String login, List<String> roles) {
+        UserDataRequest dto = new UserDataRequest();
+        dto.setLogin(login);
+        dto.setName("name");
+        dto.setPassword("abcD1");
+        dto.setRoles(roles);
+        return dto;
+    }
+}
@@ -0,0 +1,250 @@
+package main.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import main.model.enums.RoleType;
+import main.service.RoleMembershipIndex;
+import main.service.UserCounters;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Условные запросы на встроенной H2:
+ * 1. GET пользователя с совпадающим If-None-Match - 304 без тела после одного запроса версии
+ * 2. ETag списка пользователей меняется после изменения пользователя
+ * 3. PUT с устаревшим If-Match - 412, с текущим - изменение выполняется
+ * 4. Список пользователей роли (и его ETag) обновляется после изменения ролей пользователя
+ * 5. Число пользователей, всего и по ролям, обновляется после изменения и удаления пользователя
+ * 6. Запрос и ответ в CBOR и Smile по Content-Type и Accept, без Accept - JSON
+ * 7. У JSON и Smile одного пользователя разные ETag, ETag одного формата не даёт 304 для другого
+ * 8. Импорт NDJSON: ответ после импорта всех частей, ошибки с номерами записей в потоке
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+public class UserControllerTest {
+    private static final String PASSWORD_HASH = new BCryptPasswordEncoder(4).encode("abcD1");
+    private static final String EDIT_REQUEST = "{\"login\":\"firstUser\",\"name\":\"newName\",\"password\":\"abcD1\",\"roles\":[\"USER\"]}";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private RoleMembershipIndex roleMembershipIndex;
+    @Autowired
+    private UserCounters userCounters;
+
+    @Before
+    public void createUser() {
+        jdbcTemplate.update("DELETE FROM user2role");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO users (login, name, password) VALUES ('firstUser', 'name', ?)", PASSWORD_HASH);
+        jdbcTemplate.update("INSERT INTO user2role (user_id, role_id) SELECT u.id, r.id FROM users u, roles r " +
+                "WHERE u.login = 'firstUser' AND r.name = 'USER'");
+    }
+
+    // 1. GET пользователя с совпадающим If-None-Match - 304 без тела после одного запроса версии
+    @Test
+    public void getUser_MatchingETagShouldReturnNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/user/firstUser"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Assert.assertNotNull(etag);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/user/firstUser").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+        Assert.assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    // 2. ETag списка пользователей меняется после изменения пользователя
+    @Test
+    public void getAllUsers_ETagShouldChangeAfterUpdate() throws Exception {
+        String etag = mockMvc.perform(get("/user/"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/user/").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        perform(put("/user/firstUser").contentType(MediaType.APPLICATION_JSON).content(EDIT_REQUEST))
+                .andExpect(status().isOk());
+
+        String newEtag = mockMvc.perform(get("/user/").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Assert.assertNotEquals(etag, newEtag);
+    }
+
+    // 3. PUT с устаревшим If-Match - 412, с текущим - изменение выполняется
+    @Test
+    public void editUser_ShouldHonourIfMatch() throws Exception {
+        String etag = mockMvc.perform(get("/user/firstUser")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        perform(put("/user/firstUser").contentType(MediaType.APPLICATION_JSON).content(EDIT_REQUEST)
+                .header(HttpHeaders.IF_MATCH, "\"0-0\""))
+                .andExpect(status().isPreconditionFailed());
+        String newEtag = perform(put("/user/firstUser").contentType(MediaType.APPLICATION_JSON).content(EDIT_REQUEST)
+                .header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Assert.assertNotEquals(etag, newEtag);
+        perform(put("/user/firstUser").contentType(MediaType.APPLICATION_JSON).content(EDIT_REQUEST)
+                .header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    // 4. Список пользователей роли (и его ETag) обновляется после изменения ролей пользователя
+    @Test
+    public void getAllUsers_RoleFilterShouldFollowRoleChanges() throws Exception {
+        // Пользователь добавлен в БД напрямую, минуя UserChangedEvent
+        roleMembershipIndex.load();
+        String etag = mockMvc.perform(get("/user/").param("role", "USER"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[*].login").value(contains("firstUser")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        perform(put("/user/firstUser").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"login\":\"renamedUser\",\"name\":\"name\",\"password\":\"abcD1\",\"roles\":[\"MODERATOR\"]}"))
+                .andExpect(status().isOk());
+        // ETag списка роли - версия индекса, изменение в индексе уже применено
+        mockMvc.perform(get("/user/").param("role", "USER").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/user/").param("role", "USER"))
+                .andExpect(jsonPath("$.count").value(0));
+        mockMvc.perform(get("/user/").param("role", "MODERATOR"))
+                .andExpect(jsonPath("$.users[*].login").value(contains("renamedUser")));
+        Assert.assertEquals(1, roleMembershipIndex.count(RoleType.MODERATOR));
+        mockMvc.perform(get("/user/").param("role", "ADMIN"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // 5. Число пользователей, всего и по ролям, обновляется после изменения и удаления пользователя
+    @Test
+    public void getStats_ShouldFollowChanges() throws Exception {
+        // Пользователь добавлен в БД напрямую: счётчики сверяются с БД
+        userCounters.reconcile();
+        mockMvc.perform(get("/user/stats"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"total\":1,\"roles\":{\"USER\":1,\"MODERATOR\":0,\"OPERATOR\":0}}"));
+
+        perform(put("/user/firstUser").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"login\":\"firstUser\",\"name\":\"name\",\"password\":\"abcD1\",\"roles\":[\"MODERATOR\",\"OPERATOR\"]}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/user/stats"))
+                .andExpect(content().json("{\"total\":1,\"roles\":{\"USER\":0,\"MODERATOR\":1,\"OPERATOR\":1}}"));
+
+        mockMvc.perform(delete("/user/firstUser")).andExpect(status().isOk());
+        mockMvc.perform(delete("/user/firstUser")).andExpect(status().isOk());
+        mockMvc.perform(get("/user/stats"))
+                .andExpect(content().json("{\"total\":0,\"roles\":{\"USER\":0,\"MODERATOR\":0,\"OPERATOR\":0}}"));
+    }
+
+    // 6. Запрос и ответ в CBOR и Smile по Content-Type и Accept, без Accept - JSON
+    @Test
+    public void binaryFormats_ShouldBeNegotiated() throws Exception {
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        byte[] body = perform(put("/user/firstUser").contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR)
+                .content(cborMapper.writeValueAsBytes(new ObjectMapper().readTree(EDIT_REQUEST))))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        Assert.assertTrue(cborMapper.readTree(body).get("success").asBoolean());
+
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+        body = mockMvc.perform(get("/user/firstUser").accept(smile))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(smile))
+                .andReturn().getResponse().getContentAsByteArray();
+        Assert.assertEquals("newName", new ObjectMapper(new SmileFactory()).readTree(body).get("name").asText());
+
+        mockMvc.perform(get("/user/"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.users[*].login").value(contains("firstUser")));
+    }
+
+    // 7. У JSON и Smile одного пользователя разные ETag, ETag одного формата не даёт 304 для другого
+    @Test
+    public void getUser_ETagShouldDependOnFormat() throws Exception {
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+        String jsonEtag = mockMvc.perform(get("/user/firstUser"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String smileEtag = mockMvc.perform(get("/user/firstUser").accept(smile))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Assert.assertNotEquals(jsonEtag, smileEtag);
+
+        mockMvc.perform(get("/user/firstUser").accept(smile).header(HttpHeaders.IF_NONE_MATCH, jsonEtag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(smile));
+        mockMvc.perform(get("/user/firstUser").accept(smile).header(HttpHeaders.IF_NONE_MATCH, smileEtag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        // If-Match проверяет состояние пользователя: подходит ETag любого формата
+        perform(put("/user/firstUser").contentType(MediaType.APPLICATION_JSON).content(EDIT_REQUEST)
+                .header(HttpHeaders.IF_MATCH, smileEtag))
+                .andExpect(status().isOk());
+    }
+
+    // 8. Импорт NDJSON: ответ после импорта всех частей, ошибки с номерами записей в потоке
+    @Test
+    public void importNdjson_ShouldReturnErrorsByRecord() throws Exception {
+        perform(post("/user/import/").contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .content("{\"login\":\"secondUser\",\"name\":\"name\",\"password\":\"abcD1\"}\n" +
+                        "{\"login\":\"firstUser\",\"name\":\"name\",\"password\":\"abcD1\"}\n" +
+                        "{\"login\":\"thirdUser\",\"name\":\"name\",\"password\":\"abcD1\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.errors['1.login']").value("login already exists"));
+
+        mockMvc.perform(get("/user/"))
+                .andExpect(jsonPath("$.users[*].login").value(contains("firstUser", "secondUser", "thirdUser")));
+    }
+
+    // Запрос к асинхронному методу контроллера (CompletableFuture)
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
@@ -0,0 +1,119 @@
+package main.controller;
+
+import main.api.request.UserDataRequest;
+import main.service.UserListSnapshot;
+import main.service.UserService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Готовый ответ GET /user/ (user.list-snapshot.enabled):
+ * 1. после создания пользователя снимок пересобирается, ответ совпадает с обычной сериализацией, в том числе в gzip
+ *    (со своим ETag);
+ *    клиенту, который предпочитает CBOR, снимок в JSON не отдаётся
+ * 2. снимок, отставший от счётчика изменений таблицы, не отдаётся - ответ собирается из БД
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "user.list-snapshot.enabled=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+public class UserListSnapshotTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserListSnapshot userListSnapshot;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void clearUsers() {
+        jdbcTemplate.update("DELETE FROM user2role");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    // 1. после создания пользователя снимок пересобирается, ответ совпадает с обычной сериализацией, в том числе в gzip
+    @Test
+    public void snapshotShouldBeRebuiltAfterCreateUser() throws Exception {
+        UserDataRequest request = new UserDataRequest();
+        request.setLogin("firstUser");
+        request.setName("name");
+        request.setPassword("abcD1");
+        request.setRoles(List.of("USER"));
+        userService.createUser(request).join();
+
+        String expected = "{\"count\":1,\"users\":[{\"login\":\"firstUser\",\"name\":\"name\"}]}";
+        for (int attempt = 0; attempt < 100 && !matches(userListSnapshot.get(), expected); attempt++)
+            Thread.sleep(50);
+        UserListSnapshot.Snapshot snapshot = userListSnapshot.get();
+        Assert.assertEquals(expected, new String(snapshot.getJson(), StandardCharsets.UTF_8));
+
+        mockMvc.perform(get("/user/"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, snapshot.getEtag()))
+                .andExpect(content().json(expected, true));
+        MvcResult gzipped = mockMvc.perform(get("/user/").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+        Assert.assertNotEquals(snapshot.getEtag(), gzipped.getResponse().getHeader(HttpHeaders.ETAG));
+        byte[] body = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray())).readAllBytes();
+        Assert.assertEquals(expected, new String(body, StandardCharsets.UTF_8));
+        mockMvc.perform(get("/user/").header(HttpHeaders.IF_NONE_MATCH, snapshot.getEtag()))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/user/").accept(MediaType.APPLICATION_CBOR, MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+    }
+
+    // 2. снимок, отставший от счётчика изменений таблицы, не отдаётся - ответ собирается из БД
+    @Test
+    public void staleSnapshotShouldNotBeServed() throws Exception {
+        UserDataRequest request = new UserDataRequest();
+        request.setLogin("firstUser");
+        request.setName("name");
+        request.setPassword("abcD1");
+        userService.createUser(request).join();
+        String expected = "{\"count\":1,\"users\":[{\"login\":\"firstUser\",\"name\":\"name\"}]}";
+        for (int attempt = 0; attempt < 100 && !matches(userListSnapshot.get(), expected); attempt++)
+            Thread.sleep(50);
+
+        // Изменение без UserChangedEvent: снимок не пересобирается
+        jdbcTemplate.update("INSERT INTO users (login, name, password) VALUES ('secondUser', 'name', 'hash')");
+        jdbcTemplate.update("UPDATE table_versions SET version = version + 1 WHERE name = 'users'");
+
+        mockMvc.perform(get("/user/"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, userService.getAllETag()))
+                .andExpect(content().json("{\"count\":2}"));
+    }
+
+    // Снимок пересобран по текущему состоянию БД: снимок предыдущего теста мог содержать тот же JSON
+    private boolean matches(UserListSnapshot.Snapshot snapshot, String json) {
+        return snapshot != null && json.equals(new String(snapshot.getJson(), StandardCharsets.UTF_8))
+                && snapshot.getEtag().equals(userService.getAllETag());
+    }
+}
@@ -0,0 +1,112 @@
+package main.datasource;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static main.filter.ReadYourWritesFilter.CLIENT_ID_HEADER;
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Чтение с реплики на двух встроенных H2 (профили h2,replica); в реплику и основную БД записаны разные пользователи:
+ * 1. GET-запрос читает список с реплики
+ * 2. после изменения клиент читает с основной БД, другие клиенты - с реплики
+ * 3. при недоступной реплике read-only транзакция получает соединение с основной БД
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles({"h2", "replica"})
+public class ReplicaRoutingTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Value("${user.datasource.replica.url}")
+    private String replicaUrl;
+
+    @Before
+    public void createUsers() {
+        JdbcTemplate replicaJdbcTemplate = new JdbcTemplate(new SimpleDriverDataSource(new org.h2.Driver(), replicaUrl, "sa", ""));
+        for (JdbcTemplate template : new JdbcTemplate[]{jdbcTemplate, replicaJdbcTemplate}) {
+            template.update("DELETE FROM user2role");
+            template.update("DELETE FROM users");
+        }
+        jdbcTemplate.update("INSERT INTO users (login, name, password) VALUES ('primaryUser', 'name', 'hash')");
+        replicaJdbcTemplate.update("INSERT INTO users (login, name, password) VALUES ('replicaUser', 'name', 'hash')");
+    }
+
+    // 1. GET-запрос читает список с реплики
+    @Test
+    public void getAllUsers_ShouldReadFromReplica() throws Exception {
+        mockMvc.perform(get("/user/").header(CLIENT_ID_HEADER, "reader"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[*].login").value(contains("replicaUser")));
+    }
+
+    // 2. после изменения клиент читает с основной БД, другие клиенты - с реплики
+    @Test
+    public void getAllUsers_AfterWriteShouldReadFromPrimary() throws Exception {
+        mockMvc.perform(delete("/user/unknownUser").header(CLIENT_ID_HEADER, "writer"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/user/").header(CLIENT_ID_HEADER, "writer"))
+                .andExpect(jsonPath("$.users[*].login").value(contains("primaryUser")));
+        mockMvc.perform(get("/user/").header(CLIENT_ID_HEADER, "otherClient"))
+                .andExpect(jsonPath("$.users[*].login").value(contains("replicaUser")));
+    }
+
+    // 3. при недоступной реплике read-only транзакция получает соединение с основной БД
+    @Test
+    public void getConnection_UnavailableReplicaShouldFallBackToPrimary() throws Exception {
+        DataSource primary = Mockito.mock(DataSource.class);
+        Connection primaryConnection = Mockito.mock(Connection.class);
+        Mockito.when(primary.getConnection()).thenReturn(primaryConnection);
+        DataSource replica = Mockito.mock(DataSource.class);
+        Mockito.when(replica.getConnection()).thenThrow(new SQLException("replica is down"));
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replica, Duration.ofMinutes(1));
+
+        TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(routing));
+        readOnly.setReadOnly(true);
+        ReadRouting.allowReplica();
+        try {
+            // Признак read-only выставляется после получения соединения транзакцией, поэтому оно берётся внутри
+            for (int i = 0; i < 2; i++)
+                Assert.assertSame(primaryConnection, readOnly.execute(status -> getConnection(routing)));
+        } finally {
+            ReadRouting.reset();
+        }
+        Mockito.verify(replica, Mockito.times(1)).getConnection();
+        Assert.assertEquals(1, routing.getFallbackCount());
+    }
+
+    private static Connection getConnection(DataSource dataSource) {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
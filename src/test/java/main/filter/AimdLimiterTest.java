@@ -0,0 +1,82 @@
+package main.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Адаптивный предел AimdLimiter:
+ * 1. запрос сверх предела отклоняется, освобождение разрешения пропускает следующий
+ * 2. быстрые запросы при загрузке предела увеличивают его на 1, медленные и сброшенные уменьшают
+ * 3. предел не опускается ниже минимального, повторное освобождение разрешения не учитывается
+ * 4. медленные запросы, допущенные до уменьшения предела, его больше не уменьшают
+ */
+public class AimdLimiterTest {
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    // 1. запрос сверх предела отклоняется, освобождение разрешения пропускает следующий
+    @Test
+    public void tryAcquire_ShouldRejectOverLimit() {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 10, THRESHOLD, 0.5, clock::get);
+        AimdLimiter.Permit first = limiter.tryAcquire();
+        Assert.assertNotNull(limiter.tryAcquire());
+        Assert.assertNull(limiter.tryAcquire());
+
+        first.release(false);
+        Assert.assertNotNull(limiter.tryAcquire());
+    }
+
+    // 2. быстрые запросы при загрузке предела увеличивают его на 1, медленные и сброшенные уменьшают
+    @Test
+    public void release_ShouldAdaptLimitToLatency() {
+        AimdLimiter limiter = new AimdLimiter(4, 1, 10, THRESHOLD, 0.5, clock::get);
+        List<AimdLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            permits.add(limiter.tryAcquire());
+        clock.addAndGet(THRESHOLD / 2);
+        permits.get(3).release(false);
+        Assert.assertEquals(5, limiter.getLimit());
+
+        clock.addAndGet(THRESHOLD);
+        permits.get(2).release(false);
+        Assert.assertEquals(2, limiter.getLimit());
+
+        limiter = new AimdLimiter(4, 1, 10, THRESHOLD, 0.5, clock::get);
+        limiter.tryAcquire().release(true);
+        Assert.assertEquals(2, limiter.getLimit());
+    }
+
+    // 3. предел не опускается ниже минимального, повторное освобождение разрешения не учитывается
+    @Test
+    public void release_ShouldKeepMinLimitAndIgnoreRepeatedRelease() {
+        AimdLimiter limiter = new AimdLimiter(2, 2, 10, THRESHOLD, 0.5, clock::get);
+        AimdLimiter.Permit permit = limiter.tryAcquire();
+        permit.release(true);
+        permit.release(true);
+
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    // 4. медленные запросы, допущенные до уменьшения предела, его больше не уменьшают
+    @Test
+    public void release_ShouldDecreaseOncePerWindow() {
+        AimdLimiter limiter = new AimdLimiter(40, 1, 100, THRESHOLD, 0.5, clock::get);
+        List<AimdLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            permits.add(limiter.tryAcquire());
+        clock.addAndGet(THRESHOLD * 2);
+        for (AimdLimiter.Permit permit : permits)
+            permit.release(false);
+        Assert.assertEquals(20, limiter.getLimit());
+
+        limiter.tryAcquire().release(true);
+        Assert.assertEquals(10, limiter.getLimit());
+    }
+}
@@ -0,0 +1,88 @@
+package main.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Миграция базы, созданной прежним schema.sql (без истории Flyway), с данными:
+ * 1. база принимается за версию 1, миграция V2 переносит пользователей и их роли на суррогатный ключ
+ * 2. после миграции новые пользователи получают следующие id, логин остаётся уникальным
+ */
+public class SchemaMigrationTest {
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void createLegacyDatabase() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:legacy_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // Прежняя схема без истории миграций и данные в ней
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/h2/V1__init.sql")).execute(dataSource);
+        jdbcTemplate.update("INSERT INTO users (login, name, password) VALUES " +
+                "('bob', 'Bob', 'hash2'), ('alice', 'Alice', 'hash1'), ('carol', 'Carol', 'hash3')");
+        jdbcTemplate.update("INSERT INTO user2role (user_id, role_id) SELECT 'alice', id FROM roles WHERE name = 'USER'");
+        jdbcTemplate.update("INSERT INTO user2role (user_id, role_id) SELECT 'alice', id FROM roles WHERE name = 'USER'");
+        jdbcTemplate.update("INSERT INTO user2role (user_id, role_id) SELECT 'alice', id FROM roles WHERE name = 'OPERATOR'");
+        jdbcTemplate.update("INSERT INTO user2role (user_id, role_id) SELECT 'carol', id FROM roles WHERE name = 'MODERATOR'");
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/h2")
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+    }
+
+    // 1. база принимается за версию 1, миграция V2 переносит пользователей и их роли на суррогатный ключ
+    @Test
+    public void migrate_ShouldMoveUsersAndRolesToSurrogateKey() {
+        List<Map<String, Object>> users = jdbcTemplate.queryForList("SELECT id, login, password, version FROM users ORDER BY login");
+        Assert.assertEquals(3, users.size());
+        Assert.assertEquals("hash1", users.get(0).get("PASSWORD"));
+        Assert.assertEquals(0L, users.get(0).get("VERSION"));
+
+        Assert.assertEquals(List.of("OPERATOR", "USER"), roles("alice"));
+        Assert.assertEquals(List.of(), roles("bob"));
+        Assert.assertEquals(List.of("MODERATOR"), roles("carol"));
+
+        Assert.assertEquals(Long.valueOf(3), jdbcTemplate.queryForObject(
+                "SELECT version FROM table_versions WHERE name = 'users'", Long.class));
+        // Прежняя схема принята за версию 1 (baseline), применена только V2
+        Assert.assertEquals(List.of("BASELINE 1", "SQL 2"), jdbcTemplate.queryForList(
+                "SELECT \"type\" || ' ' || \"version\" FROM \"flyway_schema_history\" " +
+                        "WHERE \"version\" IS NOT NULL ORDER BY \"installed_rank\"", String.class));
+    }
+
+    // 2. после миграции новые пользователи получают следующие id, логин остаётся уникальным
+    @Test
+    public void migrate_ShouldKeepIdentityAndUniqueLogin() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        jdbcTemplate.update("INSERT INTO users (login, name, password) VALUES ('dave', 'Dave', 'hash4')");
+        Assert.assertEquals(Long.valueOf(maxId + 1),
+                jdbcTemplate.queryForObject("SELECT id FROM users WHERE login = 'dave'", Long.class));
+
+        try {
+            jdbcTemplate.update("INSERT INTO users (login, name, password) VALUES ('alice', 'Other', 'hash')");
+            Assert.fail("login must stay unique");
+        } catch (DataIntegrityViolationException e) {
+            // логин занят
+        }
+    }
+
+    private List<String> roles(String login) {
+        return jdbcTemplate.queryForList("SELECT r.name FROM user2role ur JOIN users u ON u.id = ur.user_id " +
+                "JOIN roles r ON r.id = ur.role_id WHERE u.login = ? ORDER BY r.name", String.class, login);
+    }
+}
@@ -0,0 +1,188 @@
+package main.repository.embedded;
+
+import main.model.embedded.StoredUser;
+import main.model.enums.RoleType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Встроенное хранилище пользователей:
+ * 1. после повторного открытия состояние восстанавливается из журнала (создание, переименование, удаление)
+ * 2. снимок заменяет старые журналы, изменения после снимка восстанавливаются из нового журнала
+ * 3. оборванная последняя запись журнала отбрасывается при открытии
+ * 4. занятый логин и устаревшая версия отклоняются без записи в журнал
+ * 5. параллельные снимки и изменения не теряют записей после закрытия и открытия
+ */
+public class EmbeddedUserStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EmbeddedUserStore store;
+
+    @Before
+    public void openStore() throws IOException {
+        store = open();
+    }
+
+    @After
+    public void closeStore() throws IOException {
+        store.close();
+    }
+
+    // 1. после повторного открытия состояние восстанавливается из журнала (создание, переименование, удаление)
+    @Test
+    public void reopen_ShouldReplayLog() throws IOException {
+        store.insert("alice", "Alice", "hash1", EnumSet.of(RoleType.USER));
+        store.insert("bob", "Bob", "hash2", Set.of());
+        store.update("alice", 0L, "alice2", "Alice", "hash1", EnumSet.of(RoleType.USER, RoleType.OPERATOR));
+        store.deleteByLogin("bob");
+        long tableVersion = store.getTableVersion();
+
+        StoredUser alice = reopenWithoutSnapshot().findByLogin("alice2").orElseThrow();
+        Assert.assertEquals(EnumSet.of(RoleType.USER, RoleType.OPERATOR), alice.getRoles());
+        Assert.assertEquals(1, alice.getVersion());
+        Assert.assertFalse(store.existsByLogin("alice"));
+        Assert.assertFalse(store.existsByLogin("bob"));
+        Assert.assertEquals(tableVersion, store.getTableVersion());
+        // Идентификаторы не переиспользуются после восстановления
+        Assert.assertEquals(3, store.insert("carol", "Carol", "hash3", Set.of()).getId());
+    }
+
+    // 2. снимок заменяет старые журналы, изменения после снимка восстанавливаются из нового журнала
+    @Test
+    public void snapshot_ShouldCompactLogs() throws IOException {
+        for (int i = 0; i < 100; i++)
+            store.insert("user" + i, "name", "hash", Set.of());
+        for (int i = 0; i < 50; i++)
+            store.deleteByLogin("user" + i);
+        store.snapshot();
+        store.insert("late", "Late", "hash", Set.of());
+
+        Assert.assertEquals(List.of("users-1.log"), logFiles());
+        reopenWithoutSnapshot();
+        Assert.assertEquals(51, store.size());
+        Assert.assertTrue(store.existsByLogin("late"));
+        Assert.assertEquals(List.of("late", "user50"), store.findPageAfter(null, 2, user -> true).stream()
+                .map(StoredUser::getLogin)
+                .collect(Collectors.toList()));
+    }
+
+    // 3. оборванная последняя запись журнала отбрасывается при открытии
+    @Test
+    public void reopen_ShouldIgnoreTornTail() throws IOException {
+        store.insert("alice", "Alice", "hash", Set.of());
+        store.insert("bob", "Bob", "hash", Set.of());
+        store.deleteByLogin("missing");
+        reopenWithoutSnapshot();
+
+        Path log = folder.getRoot().toPath().resolve("users-0.log");
+        try (RandomAccessFile file = new RandomAccessFile(log.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        reopenWithoutSnapshot();
+        Assert.assertTrue(store.existsByLogin("alice"));
+        Assert.assertFalse(store.existsByLogin("bob"));
+        // Новые записи пишутся после последней целой записи
+        store.insert("carol", "Carol", "hash", Set.of());
+        reopenWithoutSnapshot();
+        Assert.assertEquals(2, store.size());
+    }
+
+    // 4. занятый логин и устаревшая версия отклоняются без записи в журнал
+    @Test
+    public void conflicts_ShouldBeRejected() throws IOException {
+        store.insert("alice", "Alice", "hash", Set.of());
+        store.insert("bob", "Bob", "hash", Set.of());
+        long tableVersion = store.getTableVersion();
+
+        assertRejected(DataIntegrityViolationException.class, () -> store.insert("alice", "Other", "hash", Set.of()));
+        assertRejected(DataIntegrityViolationException.class,
+                () -> store.update("alice", null, "bob", "Alice", "hash", Set.of()));
+        store.update("alice", 0L, "alice", "Alice2", "hash", Set.of());
+        assertRejected(OptimisticLockingFailureException.class,
+                () -> store.update("alice", 0L, "alice", "Alice3", "hash", Set.of()));
+
+        Assert.assertEquals(tableVersion + 1, store.getTableVersion());
+        Assert.assertEquals("Alice2", reopenWithoutSnapshot().findByLogin("alice").orElseThrow().getName());
+    }
+
+    // 5. параллельные снимки и изменения не теряют записей после закрытия и открытия
+    @Test
+    public void concurrentSnapshots_ShouldKeepAllChanges() throws Exception {
+        int threads = 4;
+        int usersPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < usersPerThread; i++) {
+                    store.insert("user" + thread + "-" + i, "name", "hash", Set.of());
+                    store.snapshot();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> writer : writers)
+            writer.get();
+        executor.shutdown();
+
+        store.close();
+        store = open();
+        Assert.assertEquals(threads * usersPerThread, store.size());
+    }
+
+    private static void assertRejected(Class<? extends RuntimeException> expected, Runnable change) {
+        try {
+            change.run();
+            Assert.fail("expected " + expected.getSimpleName());
+        } catch (RuntimeException e) {
+            Assert.assertEquals(expected, e.getClass());
+        }
+    }
+
+    private EmbeddedUserStore open() throws IOException {
+        EmbeddedUserStore opened = new EmbeddedUserStore(folder.getRoot().getPath(), DataSize.ofKilobytes(4), false,
+                Duration.ofHours(1), DataSize.ofMegabytes(64));
+        opened.open();
+        return opened;
+    }
+
+    // Повторное открытие, как после падения процесса: без снимка при закрытии
+    private EmbeddedUserStore reopenWithoutSnapshot() throws IOException {
+        store.closeLog();
+        store = open();
+        return store;
+    }
+
+    private List<String> logFiles() throws IOException {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".log"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package main.service;
+
+import main.repository.UserRepository;
+import main.repository.projection.UserCount;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+/**
+ * Сверка счётчиков с БД:
+ * 1. изменение, учтённое сверкой, но применённое слушателем после неё, не учитывается повторно
+ * 2. изменение, применённое слушателем во время сверки и не попавшее в прочитанное состояние, не теряется
+ */
+public class UserCountersTest {
+    private UserRepository userRepository;
+    private UserCounters counters;
+
+    @Before
+    public void createCounters() {
+        userRepository = Mockito.mock(UserRepository.class);
+        Mockito.doReturn(List.of(count(3))).when(userRepository).countUsers();
+        Mockito.doReturn(5L).when(userRepository).getTableVersion();
+        counters = new UserCounters(userRepository, new RoleMembershipIndex(userRepository),
+                Mockito.mock(PlatformTransactionManager.class));
+    }
+
+    // 1. изменение, учтённое сверкой, но применённое слушателем после неё, не учитывается повторно
+    @Test
+    public void reconcile_ShouldSkipChangesAlreadyCounted() {
+        counters.reconcile();
+        Assert.assertEquals(3, counters.getTotal());
+
+        counters.onUserChanged(new UserChangedEvent(null, "carol", "Carol", null, 5));
+        Assert.assertEquals(3, counters.getTotal());
+        counters.onUserChanged(new UserChangedEvent(null, "dave", "Dave", null, 6));
+        Assert.assertEquals(4, counters.getTotal());
+        counters.onUserChanged(new UserChangedEvent("dave", null, null, null, 7));
+        Assert.assertEquals(3, counters.getTotal());
+    }
+
+    // 2. изменение, применённое слушателем во время сверки и не попавшее в прочитанное состояние, не теряется
+    @Test
+    public void reconcile_ShouldKeepChangesNewerThanSnapshot() {
+        Mockito.doAnswer(invocation -> {
+            counters.onUserChanged(new UserChangedEvent(null, "carol", "Carol", null, 5));
+            counters.onUserChanged(new UserChangedEvent(null, "dave", "Dave", null, 6));
+            return List.of(count(3));
+        }).when(userRepository).countUsers();
+
+        counters.reconcile();
+        Assert.assertEquals(4, counters.getTotal());
+    }
+
+    private static UserCount count(long total) {
+        UserCount count = Mockito.mock(UserCount.class);
+        Mockito.doReturn(total).when(count).getTotal();
+        return count;
+    }
+}
@@ -0,0 +1,79 @@
+package main.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import main.api.request.UserDataRequest;
+import main.api.response.BooleanResponseDTO;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Групповая вставка createUser (user.create-batch.enabled) на встроенной H2:
+ * 1. одновременные создания вставляются несколькими пачками, каждое получает свой результат,
+ *    занятый логин (в БД или в той же пачке) - ошибку "login already exists"
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"user.create-batch.enabled=true", "user.create-batch.max-delay=200ms"})
+@ActiveProfiles("h2")
+public class UserCreateBatcherTest {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Before
+    public void createUser() {
+        jdbcTemplate.update("DELETE FROM user2role");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO users (login, name, password) VALUES ('existingUser', 'name', 'hash')");
+    }
+
+    // 1. одновременные создания вставляются несколькими пачками, каждое получает свой результат
+    @Test
+    public void createUser_ShouldInsertConcurrentRequestsInBatches() {
+        DistributionSummary batchSizes = meterRegistry.get("user.create.batch.size").summary();
+        long batchesBefore = batchSizes.count();
+
+        List<String> logins = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            logins.add("batchUser" + i);
+        logins.add("existingUser");
+        logins.add("batchUser0");
+
+        List<CompletableFuture<BooleanResponseDTO>> responses = new ArrayList<>();
+        for (String login : logins)
+            responses.add(userService.createUser(request(login)).thenApply(response -> (BooleanResponseDTO) response.getBody()));
+
+        for (int i = 0; i < 20; i++)
+            Assert.assertTrue(responses.get(i).join().getSuccess());
+        Assert.assertEquals(Map.of("login", "login already exists"), responses.get(20).join().getErrors());
+        Assert.assertFalse(responses.get(21).join().getSuccess());
+
+        Assert.assertEquals(21, (int) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        Assert.assertEquals(20, (int) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user2role", Integer.class));
+        Assert.assertTrue(batchSizes.count() - batchesBefore < 5);
+    }
+
+    private static UserDataRequest request(String login) {
+        UserDataRequest dto = new UserDataRequest();
+        dto.setLogin(login);
+        dto.setName("name");
+        dto.setPassword("abcD1");
+        dto.setRoles(List.of("USER"));
+        return dto;
+    }
+}
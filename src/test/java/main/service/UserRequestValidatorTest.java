@@ -0,0 +1,112 @@
+package main.service;
+
+import main.api.request.UserDataRequest;
+import main.model.enums.RoleType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * UserRequestValidator возвращает те же ошибки, что и прежняя проверка checkErrors на регулярных выражениях
+ * (воспроизведена ниже без изменений):
+ * 1. для всех сочетаний граничных значений login, name и password - та же карта ошибок в том же порядке ключей
+ * 2. для ролей - те же ошибки; роль null прежняя проверка не обрабатывала (NullPointerException), теперь это ошибка roles
+ */
+public class UserRequestValidatorTest {
+    private static final List<String> FIELD_VALUES = Arrays.asList(
+            null, "", "abc", "abcd", "Abc1", "abC12", "ab3", "A1b",
+            // [A-z] включает символы между Z и a
+            "ab[c1D", "ab\\c1D", "ab]c1D", "ab^c1D", "ab_c1D", "ab`c1D", "ab{c1D", "ab@c1D",
+            // не ASCII: кириллица, буква с диакритикой, цифра другой письменности, символ вне BMP
+            "логин1D", "caféD1", "Abcd٣", "Abc𝟙d",
+            "ab cD1", "abcD1\n", "ABCDE", "abcde", "12345", "ABC123");
+
+    private final UserRequestValidator validator = new UserRequestValidator();
+
+    // 1. для всех сочетаний граничных значений login, name и password - та же карта ошибок в том же порядке ключей
+    @Test
+    public void validate_ShouldMatchLegacyCheckForFields() {
+        for (String login : FIELD_VALUES) {
+            for (String name : FIELD_VALUES) {
+                for (String password : FIELD_VALUES) {
+                    UserDataRequest dto = request(login, name, password, List.of("USER"));
+                    assertSameErrors(dto);
+                }
+            }
+        }
+    }
+
+    // 2. для ролей - те же ошибки; роль null прежняя проверка не обрабатывала (NullPointerException),
+    //    теперь это ошибка roles
+    @Test
+    public void validate_ShouldMatchLegacyCheckForRoles() {
+        List<List<String>> roleValues = Arrays.asList(
+                null, List.of(), List.of("USER"), List.of("USER", "MODERATOR", "OPERATOR"),
+                List.of("user"), List.of("USER", "ADMIN"), List.of(""), List.of("USER "));
+        for (List<String> roles : roleValues) {
+            assertSameErrors(request("login", "name", "abcD1", roles));
+            assertSameErrors(request(null, "ab", "abcd", roles));
+        }
+
+        UserDataRequest nullRole = request("login", "name", "abcD1", Arrays.asList("USER", null));
+        assertThrows(NullPointerException.class, () -> legacyCheckErrors(nullRole));
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("roles", "invalid argument");
+        Assert.assertEquals(expected, validator.validate(nullRole));
+    }
+
+    private void assertSameErrors(UserDataRequest dto) {
+        String message = "login=" + dto.getLogin() + ", name=" + dto.getName() + ", password=" + dto.getPassword()
+                + ", roles=" + dto.getRoles();
+        Assert.assertEquals(message, new ArrayList<>(legacyCheckErrors(dto).entrySet()),
+                new ArrayList<>(validator.validate(dto).entrySet()));
+    }
+
+    private static UserDataRequest request(String login, String name, String password, List<String> roles) {
+        UserDataRequest dto = new UserDataRequest();
+        dto.setLogin(login);
+        dto.setName(name);
+        dto.setPassword(password);
+        dto.setRoles(roles);
+        return dto;
+    }
+
+    // Прежняя проверка из UserServiceImpl
+    private static Map<String, String> legacyCheckErrors(UserDataRequest dto) {
+        List<String> roles = dto.getRoles();
+        Map<String, String> errors = new LinkedHashMap<>();
+
+        if (!legacyCheckStringField(dto.getLogin()))
+            errors.put("login", "invalid argument");
+        if (!legacyCheckStringField(dto.getName()))
+            errors.put("name", "invalid argument");
+        if (!legacyCheckStringField(dto.getPassword())
+                || !dto.getPassword().matches(".*[A-Z]+.*")
+                || !dto.getPassword().matches(".*\\d+.*"))
+            errors.put("password", "invalid argument");
+        if (roles != null) {
+            try {
+                for (String role : roles) {
+                    RoleType.valueOf(role);
+                }
+            } catch (IllegalArgumentException e) {
+                errors.put("roles", "invalid argument");
+            }
+        }
+
+        return errors;
+    }
+
+    private static boolean legacyCheckStringField(String field) {
+        if (field == null) return false;
+        if (field.length() <= 3) return false;
+        return field.replaceAll("[A-z0-9]+", "").length() <= 0;
+    }
+}
@@ -0,0 +1,111 @@
+package main.service;
+
+import main.repository.UserRepository;
+import main.repository.projection.UserSummary;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Индекс поиска пользователей:
+ * 1. короткий запрос ищется как префикс login или name без учёта регистра
+ * 2. запрос от трёх символов ищется как подстрока login или name
+ * 3. постраничная выдача по login
+ * 4. переименование и удаление пользователя обновляют индекс
+ * 5. перестроение по БД исправляет устаревшие записи
+ * 6. изменения во время перестроения перечитываются из БД, но изменение во время этого запроса не перезаписывается
+ */
+public class UserSearchIndexTest {
+    private UserRepository userRepository;
+    private UserSearchIndex index;
+
+    @Before
+    public void createIndex() {
+        userRepository = Mockito.mock(UserRepository.class);
+        index = new UserSearchIndex(userRepository);
+        index.put("alice1", "Alice");
+        index.put("bob22", "Robert");
+        index.put("carol3", "Caroline");
+        index.put("Robin4", "Robin");
+    }
+
+    // 1. короткий запрос ищется как префикс login или name без учёта регистра
+    @Test
+    public void shortQueryShouldMatchPrefix() {
+        Assert.assertEquals(List.of("Robin4", "bob22"), index.search("RO", null, 10));
+        Assert.assertEquals(List.of(), index.search("ob", null, 10));
+    }
+
+    // 2. запрос от трёх символов ищется как подстрока login или name
+    @Test
+    public void longQueryShouldMatchSubstring() {
+        Assert.assertEquals(List.of("bob22"), index.search("bert", null, 10));
+        Assert.assertEquals(List.of("carol3"), index.search("ROL", null, 10));
+        Assert.assertEquals(List.of("carol3"), index.search("olin", null, 10));
+        Assert.assertEquals(List.of(), index.search("xyz", null, 10));
+    }
+
+    // 3. постраничная выдача по login
+    @Test
+    public void searchShouldPageByLogin() {
+        Assert.assertEquals(List.of("Robin4"), index.search("r", null, 1));
+        Assert.assertEquals(List.of("bob22"), index.search("r", "Robin4", 1));
+        Assert.assertEquals(List.of(), index.search("r", "bob22", 1));
+    }
+
+    // 4. переименование и удаление пользователя обновляют индекс
+    @Test
+    public void eventsShouldUpdateIndex() {
+        index.onUserChanged(new UserChangedEvent("alice1", "alice2", "Alicia", Set.of()));
+        Assert.assertEquals(List.of("alice2"), index.search("alici", null, 10));
+        Assert.assertEquals(List.of(), index.search("alice1", null, 10));
+
+        index.onUserChanged(new UserChangedEvent("alice2", null, null, null));
+        Assert.assertEquals(List.of(), index.search("al", null, 10));
+    }
+
+    // 5. перестроение по БД исправляет устаревшие записи
+    @Test
+    public void rebuildShouldReplaceStaleEntries() {
+        List<UserSummary> users = List.of(summary("alice1", "Alice"), summary("bob22", "Bobby"));
+        Mockito.when(userRepository.findPageAfter(Mockito.eq(""), Mockito.any())).thenReturn(users);
+        index.rebuild();
+
+        Assert.assertEquals(List.of("bob22"), index.search("bobby", null, 10));
+        Assert.assertEquals(List.of(), index.search("bert", null, 10));
+        Assert.assertEquals(List.of(), index.search("carol", null, 10));
+        Assert.assertEquals("Bobby", index.getName("bob22"));
+    }
+
+    // 6. изменения во время перестроения перечитываются из БД, но изменение во время этого запроса не перезаписывается
+    @Test
+    public void rebuildShouldKeepChangesMadeDuringReload() {
+        List<UserSummary> users = List.of(summary("alice1", "Alice"), summary("bob22", "Robert"));
+        Mockito.when(userRepository.findPageAfter(Mockito.eq(""), Mockito.any())).thenAnswer(invocation -> {
+            index.put("dave5", "Dave");
+            index.put("carol3", "Carol");
+            return users;
+        });
+        List<UserSummary> reloaded = List.of(summary("dave5", "David"), summary("carol3", "Caroline"));
+        Mockito.when(userRepository.findSummariesByLoginIn(Mockito.any())).thenAnswer(invocation -> {
+            index.put("carol3", "Carrie");
+            return reloaded;
+        });
+        index.rebuild();
+
+        Assert.assertEquals("David", index.getName("dave5"));
+        Assert.assertEquals("Carrie", index.getName("carol3"));
+        Assert.assertEquals(List.of("carol3"), index.search("carr", null, 10));
+    }
+
+    private static UserSummary summary(String login, String name) {
+        UserSummary summary = Mockito.mock(UserSummary.class);
+        Mockito.when(summary.getLogin()).thenReturn(login);
+        Mockito.when(summary.getName()).thenReturn(name);
+        return summary;
+    }
+}
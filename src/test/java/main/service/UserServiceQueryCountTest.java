@@ -0,0 +1,224 @@
+package main.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import main.api.request.UserDataRequest;
+import main.api.response.BooleanResponseDTO;
+import main.api.response.UserDTO;
+import main.model.User;
+import main.model.enums.RoleType;
+import main.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Проверка числа SQL-запросов на встроенной H2:
+ * 1. getUser загружает пользователя с ролями одним запросом
+ * 2. findAllWithRolesByLoginIn загружает нескольких пользователей с ролями одним запросом
+ * 3. updateUser с неизменным набором ролей не пишет в user2role
+ * 4. updateUser с новой ролью только добавляет связь, не пересоздавая остальные
+ * 5. importUsers проверяет логины одним запросом и вставляет пользователей и связи JDBC-пачками
+ * 6. createUser выполняет только вставки, без select по логину
+ * 7. createUser с занятым логином возвращает ошибку "login already exists"
+ * 8. updateUser со сменой логина обновляет строку на месте, сохраняя id и связи с ролями
+ * 9. createUser сохраняет хеш пароля, verifyPassword проверяет пароль по нему
+ * 10. запросы Hibernate и занятые логины учитываются в метриках под операцией UserService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("h2")
+public class UserServiceQueryCountTest {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private UserCache userCache;
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+    @Autowired
+    private RoleMembershipIndex roleMembershipIndex;
+    @Autowired
+    private UserCounters userCounters;
+
+    private static final String PASSWORD_HASH = new BCryptPasswordEncoder(4).encode("abcD1");
+
+    private Statistics statistics;
+
+    @Before
+    public void createUsers() {
+        jdbcTemplate.update("DELETE FROM user2role");
+        jdbcTemplate.update("DELETE FROM users");
+        for (String login : List.of("firstUser", "secondUser")) {
+            jdbcTemplate.update("INSERT INTO users (login, name, password) VALUES (?, 'name', ?)", login, PASSWORD_HASH);
+            jdbcTemplate.update("INSERT INTO user2role (user_id, role_id) SELECT u.id, r.id FROM users u, roles r " +
+                    "WHERE u.login = ? AND r.name IN ('USER', 'OPERATOR')", login);
+        }
+        // Данные в памяти, оставшиеся от предыдущих тестов, перестраиваются по новому содержимому БД
+        userCache.invalidateAll();
+        userSearchIndex.load();
+        roleMembershipIndex.load();
+        userCounters.reconcile();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    // 1. getUser загружает пользователя с ролями одним запросом
+    @Test
+    public void getUser_ShouldExecuteSingleStatement() {
+        UserDTO dto = (UserDTO) userService.getUser("firstUser").getBody();
+
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+        Assert.assertEquals(Set.of(RoleType.USER, RoleType.OPERATOR), new HashSet<>(dto.getRoles()));
+    }
+
+    // 2. findAllWithRolesByLoginIn загружает нескольких пользователей с ролями одним запросом
+    @Test
+    public void findAllWithRolesByLoginIn_ShouldExecuteSingleStatement() {
+        List<User> users = userRepository.findAllWithRolesByLoginIn(List.of("firstUser", "secondUser"));
+        users.forEach(user -> Assert.assertEquals(2, user.getRoles().size()));
+
+        Assert.assertEquals(2, users.size());
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    // 3. updateUser с неизменным набором ролей не пишет в user2role
+    @Test
+    public void updateUser_SameRolesShouldNotWriteUser2Role() {
+        // Без пароля в запросе: пароль не меняется, строка users не обновляется
+        UserDataRequest request = request("firstUser", List.of("OPERATOR", "USER"));
+        request.setPassword(null);
+        userService.updateUser("firstUser", request, null).join();
+
+        Assert.assertEquals(0, statistics.getCollectionUpdateCount());
+        Assert.assertEquals(0, statistics.getCollectionRecreateCount());
+        Assert.assertEquals(0, statistics.getEntityUpdateCount());
+    }
+
+    // 4. updateUser с новой ролью только добавляет связь, не пересоздавая остальные
+    @Test
+    public void updateUser_AddedRoleShouldInsertOnlyNewLink() {
+        userService.updateUser("secondUser", request("secondUser", List.of("USER", "OPERATOR", "MODERATOR")), null).join();
+
+        Assert.assertEquals(1, statistics.getCollectionUpdateCount());
+        Assert.assertEquals(0, statistics.getCollectionRecreateCount());
+        Assert.assertEquals(Integer.valueOf(3), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user2role ur JOIN users u ON u.id = ur.user_id WHERE u.login = 'secondUser'", Integer.class));
+    }
+
+    // 5. importUsers проверяет логины одним запросом и вставляет пользователей и связи JDBC-пачками
+    @Test
+    public void importUsers_ShouldCheckLoginsOnceAndInsertInBatches() {
+        List<UserDataRequest> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            users.add(request("importedUser" + i, List.of("USER", "MODERATOR")));
+        users.add(request("firstUser", List.of("USER")));
+        users.add(request("importedUser0", null));
+        users.add(request("abc", null));
+
+        BooleanResponseDTO response = (BooleanResponseDTO) userService.importUsers(users).join().getBody();
+
+        Map<String, String> errors = new LinkedHashMap<>();
+        errors.put("10.login", "login already exists");
+        errors.put("11.login", "login already exists");
+        errors.put("12.login", "invalid argument");
+        Assert.assertEquals(new BooleanResponseDTO(errors), response);
+        // через Hibernate идёт только select занятых логинов, вставки выполняются JDBC-пачками
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+        Assert.assertEquals(Integer.valueOf(20), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user2role ur JOIN users u ON u.id = ur.user_id WHERE u.login LIKE 'importedUser%'", Integer.class));
+    }
+
+    // 6. createUser выполняет только вставки, без select по логину
+    @Test
+    public void createUser_ShouldInsertWithoutSelect() {
+        BooleanResponseDTO response = (BooleanResponseDTO) userService.createUser(request("newUser", List.of("USER", "MODERATOR"))).join().getBody();
+
+        Assert.assertEquals(new BooleanResponseDTO(true), response);
+        // insert в users + пачка вставок в user2role
+        Assert.assertEquals(2, statistics.getPrepareStatementCount());
+        Assert.assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    // 7. createUser с занятым логином возвращает ошибку "login already exists"
+    @Test
+    public void createUser_ExistsLoginShouldReturnFalseResponse() {
+        BooleanResponseDTO response = (BooleanResponseDTO) userService.createUser(request("firstUser", List.of("USER"))).join().getBody();
+
+        Map<String, String> errors = new LinkedHashMap<>();
+        errors.put("login", "login already exists");
+        Assert.assertEquals(new BooleanResponseDTO(errors), response);
+        Assert.assertEquals(Integer.valueOf(2), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user2role ur JOIN users u ON u.id = ur.user_id WHERE u.login = 'firstUser'", Integer.class));
+    }
+
+    // 8. updateUser со сменой логина обновляет строку на месте, сохраняя id и связи с ролями
+    @Test
+    public void updateUser_RenameShouldUpdateInPlace() {
+        Long id = jdbcTemplate.queryForObject("SELECT id FROM users WHERE login = 'firstUser'", Long.class);
+
+        userService.updateUser("firstUser", request("renamedUser", List.of("USER", "OPERATOR")), null).join();
+
+        Assert.assertEquals(id, jdbcTemplate.queryForObject("SELECT id FROM users WHERE login = 'renamedUser'", Long.class));
+        Assert.assertEquals(1, statistics.getEntityUpdateCount());
+        Assert.assertEquals(0, statistics.getEntityDeleteCount());
+        Assert.assertEquals(0, statistics.getCollectionUpdateCount());
+    }
+
+    // 9. createUser сохраняет хеш пароля, verifyPassword проверяет пароль по нему
+    @Test
+    public void createUser_ShouldStorePasswordHash() {
+        userService.createUser(request("newUser", null)).join();
+
+        String passwordHash = jdbcTemplate.queryForObject("SELECT password FROM users WHERE login = 'newUser'", String.class);
+        Assert.assertNotEquals("abcD1", passwordHash);
+        Assert.assertEquals(new BooleanResponseDTO(true), userService.verifyPassword("newUser", "abcD1").join().getBody());
+        Assert.assertEquals(new BooleanResponseDTO(false), userService.verifyPassword("newUser", "abcD2").join().getBody());
+    }
+
+    // 10. запросы Hibernate и занятые логины учитываются в метриках под операцией UserService
+    @Test
+    public void createUser_ShouldRecordMetricsByOperation() {
+        double statements = meterRegistry.counter("user.hibernate.statements", "operation", "createUser").count();
+        double conflicts = meterRegistry.counter("user.login.conflicts").count();
+
+        userService.createUser(request("newUser", List.of("USER"))).join();
+        userService.createUser(request("newUser", List.of("USER"))).join();
+
+        // insert в users + вставка в user2role, затем неудачный insert и проверка занятости логина
+        Assert.assertEquals(statements + 4, meterRegistry.counter("user.hibernate.statements", "operation", "createUser").count(), 0);
+        Assert.assertEquals(conflicts + 1, meterRegistry.counter("user.login.conflicts").count(), 0);
+    }
+
+    private static UserDataRequest request(String login, List<String> roles) {
+        UserDataRequest request = new UserDataRequest();
+        request.setLogin(login);
+        request.setName("name");
+        request.setPassword("abcD1");
+        request.setRoles(roles);
+        return request;
+    }
+}
@@ -3,10 +3,13 @@ package main.service;
 import main.api.request.UserDataRequest;
 import main.api.response.BooleanResponseDTO;
 import main.api.response.ResponseAPI;
+import main.api.response.UserListResponse;
 import main.model.Role;
 import main.model.User;
+import main.model.enums.RoleType;
 import main.repository.RoleRepository;
 import main.repository.UserRepository;
+import main.repository.projection.UserSummary;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,6 +18,8 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -41,6 +46,11 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
  * 11. Тест с невалидным name
  * 12. Тест с невалидным password
  * 13. Тест с невалидным roles
+ * - для getAll:
+ * 14. Тест постраничной выдачи с курсором следующей страницы
+ * 15. Тест updateUser без password: текущий хеш пароля сохраняется
+ * - для importUsers:
+ * 16. Тест с логином, занятым параллельным запросом между проверкой и вставкой
  */
 
 /**
@@ -67,9 +77,20 @@ public class UserServiceTest {
     private UserRepository userRepository;
     @MockBean
     private RoleRepository roleRepository;
+    @Autowired
+    private RoleRegistry roleRegistry;
 
     private static UserDataRequest testRequestDto;
 
+    @Before
+    public void loadRoles() {
+        //Справочник ролей загружается из замоканного репозитория
+        Role userRole = new Role();
+        userRole.setName(RoleType.USER);
+        Mockito.doReturn(List.of(userRole)).when(roleRepository).findAll();
+        roleRegistry.refresh();
+    }
+
     @Before
     public void createTestRequestDto() {
         //Создание валидного DTO перед каждым тестом
@@ -83,8 +104,7 @@ public class UserServiceTest {
     // 1. Тест с валидным DTO
     @Test
     public void createUser_ValidRequestShouldReturnTrueResponse() {
-        Mockito.doReturn(Optional.of(new Role())).when(roleRepository).findByName("USER");
-        ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto);
+        ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto).join();
         ResponseEntity<ResponseAPI> expectedResponse = new ResponseEntity<>(new BooleanResponseDTO(true), HttpStatus.OK);
         Assert.assertEquals(expectedResponse, actualResponse);
     }
@@ -92,9 +112,12 @@ public class UserServiceTest {
     // 2. Тест с уже существующим login
     @Test
     public void createUser_ExistsLoginShouldReturnFalseResponse() {
-        Mockito.doReturn(Optional.of(new User())).when(userRepository).findById("existsLogin");
+        Mockito.doThrow(new DataIntegrityViolationException("Duplicate entry"))
+                .when(userRepository)
+                .insert(Mockito.argThat(user -> user.getLogin().equals("existsLogin")));
+        Mockito.doReturn(true).when(userRepository).existsByLogin("existsLogin");
         testRequestDto.setLogin("existsLogin");
-        ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto);
+        ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto).join();
 
         Map<String, String> errors = new LinkedHashMap<>();
         errors.put("login", "login already exists");
@@ -112,7 +135,7 @@ public class UserServiceTest {
         String[] invalidValues = {null, "abc", "абвгд"};
         for (String invalidLogin : invalidValues) {
             testRequestDto.setLogin(invalidLogin);
-            ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto);
+            ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto).join();
             Assert.assertEquals(expectedResponse, actualResponse);
         }
     }
@@ -127,7 +150,7 @@ public class UserServiceTest {
         String[] invalidValues = {null, "abc", "абвгд"};
         for (String invalidName : invalidValues) {
             testRequestDto.setName(invalidName);
-            ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto);
+            ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto).join();
             Assert.assertEquals(expectedResponse, actualResponse);
         }
     }
@@ -142,7 +165,7 @@ public class UserServiceTest {
         String[] invalidValues = {null, "abc", "абвгд", "abcd", "abcD", "abc1"};
         for (String invalidPassword : invalidValues) {
             testRequestDto.setPassword(invalidPassword);
-            ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto);
+            ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto).join();
             Assert.assertEquals(expectedResponse, actualResponse);
         }
     }
@@ -150,7 +173,6 @@ public class UserServiceTest {
     // 6. Тест с невалидным roles
     @Test
     public void createUser_InvalidRolesShouldReturnFalseResponse() {
-        Mockito.doReturn(Optional.empty()).when(roleRepository).findByName("Invalid_Role");
 
         Map<String, String> errors = new LinkedHashMap<>();
         errors.put("roles", "invalid argument");
@@ -158,33 +180,34 @@ public class UserServiceTest {
 
         List<String> invalidRoles = Collections.singletonList("Invalid_Role");
         testRequestDto.setRoles(invalidRoles);
-        ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto);
+        ResponseEntity<ResponseAPI> actualResponse = userService.createUser(testRequestDto).join();
         Assert.assertEquals(expectedResponse, actualResponse);
     }
 
     // 7. Тест с валидным DTO
     @Test
     public void updateUser_ValidRequestShouldReturnTrueResponse() {
-        Mockito.doReturn(Optional.of(new User("currentLogin", "userName", "abcD1", List.of(new Role()))))
+        Mockito.doReturn(Optional.of("abcD1"))
+                .when(userRepository)
+                .findPasswordByLogin("currentLogin");
+        Mockito.doReturn(Optional.of(new User("currentLogin", "userName", "abcD1", new HashSet<>(Set.of(new Role())))))
                 .when(userRepository)
-                .findById("currentLogin");
-        Mockito.doReturn(Optional.empty())
+                .findByLogin("currentLogin");
+        Mockito.doReturn(false)
                 .when(userRepository)
-                .findById("login");
-        Mockito.doReturn(Optional.of(new Role()))
-                .when(roleRepository)
-                .findByName("USER");
+                .existsByLogin("login");
 
-        ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto);
-        ResponseEntity<ResponseAPI> expectedResponse = new ResponseEntity<>(new BooleanResponseDTO(true), HttpStatus.OK);
-        Assert.assertEquals(expectedResponse, actualResponse);
+        ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto, null).join();
+        Assert.assertEquals(HttpStatus.OK, actualResponse.getStatusCode());
+        Assert.assertEquals(new BooleanResponseDTO(true), actualResponse.getBody());
+        Assert.assertNotNull(actualResponse.getHeaders().getETag());
     }
 
     // 8. Тест с изменением несуществующего пользователя должен вернуть исключение со статусом NOT_FOUND
     @Test
     public void updateUser_NotExistsUserShouldReturnError404() {
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
-                () -> userService.updateUser("notExistsUser", testRequestDto));
+                () -> userService.updateUser("notExistsUser", testRequestDto, null));
         HttpStatus expectedStatus = HttpStatus.NOT_FOUND;
         HttpStatus actualStatus = ex.getStatus();
         Assert.assertEquals(expectedStatus, actualStatus);
@@ -193,18 +216,18 @@ public class UserServiceTest {
     // 9. Тест с заменой login на уже существующий в БД
     @Test
     public void updateUser_ExistsLoginShouldReturnFalseResponse() {
-        Mockito.doReturn(Optional.of(new User("currentLogin", "userName", "abcD1", List.of(new Role()))))
+        Mockito.doReturn(Optional.of("abcD1"))
                 .when(userRepository)
-                .findById("currentLogin");
-        Mockito.doReturn(Optional.of(new Role()))
-                .when(roleRepository)
-                .findByName("USER");
-        Mockito.doReturn(Optional.of(new User()))
+                .findPasswordByLogin("currentLogin");
+        Mockito.doReturn(Optional.of(new User("currentLogin", "userName", "abcD1", new HashSet<>(Set.of(new Role())))))
                 .when(userRepository)
-                .findById("existsLogin");
+                .findByLogin("currentLogin");
+        Mockito.doReturn(true)
+                .when(userRepository)
+                .existsByLogin("existsLogin");
 
         testRequestDto.setLogin("existsLogin");
-        ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto);
+        ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto, null).join();
 
         Map<String, String> errors = new LinkedHashMap<>();
         errors.put("login", "login already exists");
@@ -215,9 +238,9 @@ public class UserServiceTest {
     // 10. Тест с невалидным login
     @Test
     public void updateUser_InvalidLoginShouldReturnFalseResponse() {
-        Mockito.doReturn(Optional.of(new User()))
+        Mockito.doReturn(Optional.of("abcD1"))
                 .when(userRepository)
-                .findById("currentLogin");
+                .findPasswordByLogin("currentLogin");
 
         Map<String, String> errors = new LinkedHashMap<>();
         errors.put("login", "invalid argument");
@@ -226,7 +249,7 @@ public class UserServiceTest {
         String[] invalidValues = {null, "abc", "абвгд"};
         for (String invalidLogin : invalidValues) {
             testRequestDto.setLogin(invalidLogin);
-            ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto);
+            ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto, null).join();
             Assert.assertEquals(expectedResponse, actualResponse);
         }
     }
@@ -234,9 +257,9 @@ public class UserServiceTest {
     // 11. Тест с невалидным name
     @Test
     public void updateUser_InvalidNameShouldReturnFalseResponse() {
-        Mockito.doReturn(Optional.of(new User()))
+        Mockito.doReturn(Optional.of("abcD1"))
                 .when(userRepository)
-                .findById("currentLogin");
+                .findPasswordByLogin("currentLogin");
 
         Map<String, String> errors = new LinkedHashMap<>();
         errors.put("name", "invalid argument");
@@ -245,7 +268,7 @@ public class UserServiceTest {
         String[] invalidValues = {null, "abc", "абвгд"};
         for (String invalidName : invalidValues) {
             testRequestDto.setName(invalidName);
-            ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto);
+            ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto, null).join();
             Assert.assertEquals(expectedResponse, actualResponse);
         }
     }
@@ -253,18 +276,19 @@ public class UserServiceTest {
     // 12. Тест с невалидным password
     @Test
     public void updateUser_InvalidPasswordShouldReturnFalseResponse() {
-        Mockito.doReturn(Optional.of(new User()))
+        Mockito.doReturn(Optional.of("abcD1"))
                 .when(userRepository)
-                .findById("currentLogin");
+                .findPasswordByLogin("currentLogin");
 
         Map<String, String> errors = new LinkedHashMap<>();
         errors.put("password", "invalid argument");
         ResponseEntity<ResponseAPI> expectedResponse = new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK);
 
-        String[] invalidValues = {null, "abc", "абвгд", "abcd", "abcD", "abc1"};
+        // Без пароля (null) пароль не меняется, это не ошибка
+        String[] invalidValues = {"abc", "абвгд", "abcd", "abcD", "abc1"};
         for (String invalidPassword : invalidValues) {
             testRequestDto.setPassword(invalidPassword);
-            ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto);
+            ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto, null).join();
             Assert.assertEquals(expectedResponse, actualResponse);
         }
     }
@@ -272,10 +296,9 @@ public class UserServiceTest {
     // 13. Тест с невалидным roles
     @Test
     public void updateUser_InvalidRolesShouldReturnFalseResponse() {
-        Mockito.doReturn(Optional.of(new User()))
+        Mockito.doReturn(Optional.of("abcD1"))
                 .when(userRepository)
-                .findById("currentLogin");
-        Mockito.doReturn(Optional.empty()).when(roleRepository).findByName("Invalid_Role");
+                .findPasswordByLogin("currentLogin");
 
         Map<String, String> errors = new LinkedHashMap<>();
         errors.put("roles", "invalid argument");
@@ -283,7 +306,65 @@ public class UserServiceTest {
 
         List<String> invalidRoles = Collections.singletonList("Invalid_Role");
         testRequestDto.setRoles(invalidRoles);
-        ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto);
+        ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto, null).join();
         Assert.assertEquals(expectedResponse, actualResponse);
     }
-}
\ No newline at end of file
+
+    // 14. Тест постраничной выдачи с курсором следующей страницы
+    @Test
+    public void getAll_PageShouldReturnNextCursor() {
+        List<UserSummary> page = new ArrayList<>();
+        for (String login : List.of("login1", "login2", "login3")) {
+            UserSummary summary = Mockito.mock(UserSummary.class);
+            Mockito.doReturn(login).when(summary).getLogin();
+            Mockito.doReturn("name").when(summary).getName();
+            page.add(summary);
+        }
+        Mockito.doReturn(page).when(userRepository).findPageAfter("login0", PageRequest.of(0, 3));
+
+        UserListResponse actualResponse = (UserListResponse) userService.getAll(2, "login0").getBody();
+        Assert.assertEquals(2, actualResponse.getCount());
+        Assert.assertEquals("login2", actualResponse.getNextCursor());
+        Assert.assertNull(actualResponse.getUsers().get(0).getRoles());
+    }
+
+    // 15. Тест updateUser без password: текущий хеш пароля сохраняется
+    @Test
+    public void updateUser_WithoutPasswordShouldKeepPasswordHash() {
+        Mockito.doReturn(Optional.of("currentHash"))
+                .when(userRepository)
+                .findPasswordByLogin("currentLogin");
+        Mockito.doReturn(Optional.of(new User("currentLogin", "userName", "currentHash", new HashSet<>(Set.of(new Role())))))
+                .when(userRepository)
+                .findByLogin("currentLogin");
+
+        testRequestDto.setPassword(null);
+        ResponseEntity<ResponseAPI> actualResponse = userService.updateUser("currentLogin", testRequestDto, null).join();
+        Assert.assertEquals(new BooleanResponseDTO(true), actualResponse.getBody());
+        Mockito.verify(userRepository).save(Mockito.argThat(user -> user.getPassword().equals("currentHash")));
+    }
+
+    // 16. Тест importUsers с логином, занятым параллельным запросом между проверкой и вставкой
+    @Test
+    public void importUsers_LoginTakenBeforeInsertShouldReturnRecordError() {
+        Mockito.doReturn(List.of()).doReturn(List.of("takenLogin"))
+                .when(userRepository)
+                .findExistingLogins(Mockito.any());
+        Mockito.doThrow(new DataIntegrityViolationException("Duplicate entry")).doReturn(1L)
+                .when(userRepository)
+                .insertAll(Mockito.any());
+
+        UserDataRequest takenDto = new UserDataRequest();
+        takenDto.setLogin("takenLogin");
+        takenDto.setName("name");
+        takenDto.setPassword("abcD1");
+        takenDto.setRoles(List.of("USER"));
+        ResponseEntity<ResponseAPI> actualResponse = userService.importUsers(List.of(testRequestDto, takenDto)).join();
+
+        Map<String, String> errors = new LinkedHashMap<>();
+        errors.put("1.login", "login already exists");
+        Assert.assertEquals(new ResponseEntity<>(new BooleanResponseDTO(errors), HttpStatus.OK), actualResponse);
+        Mockito.verify(userRepository).insertAll(Mockito.argThat(users ->
+                users.size() == 1 && users.get(0).getLogin().equals("login")));
+    }
+}